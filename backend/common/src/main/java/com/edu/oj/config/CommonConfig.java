@@ -22,4 +22,17 @@ public class CommonConfig {
         mapper.registerModule(new JavaTimeModule());
         return mapper;
     }
+
+    /**
+     * 题目 manifest.json 的读写，字段名与 config.yml 一样用下划线
+     * <p>
+     * 评测机的 ProblemConfig 字段本身就是下划线命名，两边都用这一命名才能互相读懂；
+     * 接口返回给前端的 ProblemMetadata 不经过这里，仍是驼峰。
+     */
+    @Bean("manifestMapper")
+    ObjectMapper manifestMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        return mapper;
+    }
 }
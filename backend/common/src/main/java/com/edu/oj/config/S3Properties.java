@@ -13,4 +13,7 @@ public class S3Properties {
     private String accessKey;
     private String secretKey;
     private String bucket;
+    // 分片上传的分片大小与并行数
+    private long multipartPartSize = 8L * 1024 * 1024;
+    private int uploadConcurrency = 4;
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.edu.oj.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 重测条件，至少指定一项，多项之间为 AND
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RejudgeDto {
+    private Long problemId;
+    private Long userId;
+    // 提交 ID 闭区间 [fromId, toId]
+    private Long fromId;
+    private Long toId;
+}
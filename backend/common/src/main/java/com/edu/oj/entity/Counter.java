@@ -0,0 +1,13 @@
+package com.edu.oj.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Counter {
+    private String name;
+    private Long value;
+}
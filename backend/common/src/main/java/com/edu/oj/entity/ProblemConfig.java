@@ -13,4 +13,14 @@ public class ProblemConfig {
     public Integer numberCount;
     public Integer timeLimit;
     public Integer memoryLimit;
+    /** 输出比较方式：exact / line（默认，忽略行末空白与末尾空行）/ token / float */
+    public String compareMode;
+    /** float 模式下的绝对误差与相对误差，默认 1e-6 */
+    public Double floatAbsEps;
+    public Double floatRelEps;
+    /** Special Judge：zip 内 testlib 风格的 checker 源码路径，如 checker.cpp；设置后忽略 compareMode */
+    public String checker;
+    /** checker 每个测试点的时间（ms）与内存（MB）限制，默认 5000 / 512 */
+    public Integer checkerTimeLimit;
+    public Integer checkerMemoryLimit;
 }
@@ -0,0 +1,14 @@
+package com.edu.oj.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProblemFile {
+    private String path; // 压缩包内的相对路径
+    private Long size;
+    private String sha256; // 内容存放在 testdata/{sha256}
+}
@@ -0,0 +1,18 @@
+package com.edu.oj.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProblemMetadata {
+    private Long problemId;
+    private String version; // 题目压缩包 ETag
+    private ProblemConfig config;
+    private List<TestCaseInfo> testCases; // 按输入文件名排序
+    private List<ProblemFile> files; // 除题面外的全部文件，按路径排序；旧数据为空
+}
@@ -0,0 +1,25 @@
+package com.edu.oj.entity;
+
+import com.edu.oj.dto.RejudgeDto;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一次批量重测任务的进度
+ */
+@Data
+public class RejudgeTask {
+    public enum State { QUEUED, RUNNING, DONE, CANCELLED, FAILED }
+
+    private Long id;
+    private RejudgeDto filter;
+    private State state;
+    private Long total; // 开始时匹配到的提交数
+    private Long enqueued; // 已投递到重测通道的提交数
+    private Long skipped; // 仍在评测中（PENDING/JUDGING）而跳过的提交数
+    private Long lastSubmissionId; // 游标，已投递的最大提交 ID
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private String error;
+}
@@ -19,4 +19,12 @@ public class Submission {
     private String problemTitle;
     private String language;
     private Short score;
+    // 评测结束时写入，评测中为 null
+    private Integer verdict;
+    private Integer timeUsed;
+    private Integer memoryUsed;
+    // 最近一次投递评测的时间，提交与重测时由数据库写入
+    private LocalDateTime queuedTime;
+    // 评测序号，每次重测加一
+    private Integer judgeSeq;
 }
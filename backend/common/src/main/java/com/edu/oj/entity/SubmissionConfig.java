@@ -15,5 +15,7 @@ public class SubmissionConfig {
     private Integer timeUsed;
     private Integer memoryUsed;
     private String compileMessage;    
+    private Integer compileTime;
+    private Integer checkerCompileTime;
     private List<TestResult> testResult;
 }
@@ -0,0 +1,16 @@
+package com.edu.oj.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TestCaseInfo {
+    private String name; // 文件名去掉扩展名，对应 testcases/{name}.in 与 testcases/{name}.out
+    private Long inputSize;
+    private Long outputSize;
+    private String inputSha256; // 上传时计算，旧数据为空
+    private String outputSha256;
+}
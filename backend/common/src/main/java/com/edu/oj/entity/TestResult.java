@@ -12,6 +12,7 @@ public class TestResult {
     private Integer status;
     private Integer time;
     private Integer memory;
+    private Integer checkerTime;
     private String input;
     private String userOutput;
     private String expectedOutput;
@@ -5,23 +5,49 @@ import com.edu.oj.entity.SubmissionConfig;
 import com.edu.oj.exceptions.BusinessException;
 import com.edu.oj.exceptions.CommonErrorCode;
 import com.edu.oj.entity.ProblemConfig;
+import com.edu.oj.entity.ProblemFile;
+import com.edu.oj.entity.ProblemMetadata;
+import com.edu.oj.entity.TestCaseInfo;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
-import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.Map;
 
 /**
@@ -54,48 +80,309 @@ public class FileSystemManager {
     @Qualifier("jsonMapper")
     private ObjectMapper jsonMapper;
 
+    @Autowired
+    @Qualifier("manifestMapper")
+    private ObjectMapper manifestMapper;
+
+    @Autowired
+    private ProblemZipReader problemZipReader;
+
+    // S3 分片最小 5 MiB（最后一片除外）
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    // 上传时从压缩包中单独发布的小文件，读取时不必访问压缩包
+    private static final String STATEMENT_FILE = "statement.md";
+    private static final String CONFIG_FILE = "config.yml";
+    private static final String MANIFEST_FILE = "manifest.json";
+    // 独立对象的用户元数据，记录其取自哪个版本的压缩包
+    private static final String ZIP_ETAG_METADATA = "zip-etag";
+
+    private ExecutorService uploadExecutor;
+
+    @PostConstruct
+    public void init() {
+        uploadExecutor = Executors.newFixedThreadPool(Math.max(1, s3Properties.getUploadConcurrency()), r -> {
+            Thread t = new Thread(r, "s3-upload");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
     /**
      * 保存题目压缩包
+     * <p>
+     * 上传流先落到临时文件，再读 ZIP 中央目录校验结构（不解压条目），最后分片并行上传，
+     * 堆内存占用与压缩包大小无关。
+     * <p>
+     * 压缩包上传后，题面、配置和测试点清单（含每个测试点的 SHA-256）另存为
+     * {@code problem/{id}/} 下的独立对象，清单最后写入，其 version 为压缩包 ETag，
+     * 读取方据此判断清单是否与压缩包一致；题面与配置的用户元数据 {@code zip-etag} 同样记录该 ETag。
+     * <p>
+     * 除题面外的每个文件还按内容存放为 {@code testdata/{sha256}}，已存在的内容不重复上传，
+     * 评测机只需下载本地没有的文件。
      * @param problemId 题目ID
      * @param zipStream 压缩文件流
+     * @return 压缩包 ETag，即新的题目数据版本
      * @throws IOException IO异常
      */
-    public void saveAndUnzipProblemData(Long problemId, InputStream zipStream) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        zipStream.transferTo(baos);
-        byte[] zipBytes = baos.toByteArray();
+    public String saveAndUnzipProblemData(Long problemId, InputStream zipStream) throws IOException {
+        Path zip = Files.createTempFile("upload_" + problemId + "_", ".zip");
+        try {
+            Files.copy(zipStream, zip, StandardCopyOption.REPLACE_EXISTING);
 
-        // 验证 ZIP
-        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zipBytes))) {
+            // 验证 ZIP
             Set<String> entries = new HashSet<>();
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                entries.add(entry.getName());
+            try (ZipFile zf = new ZipFile(zip.toFile())) {
+                zf.stream().forEach(e -> entries.add(e.getName()));
+            } catch (ZipException e) {
+                throw new BusinessException(CommonErrorCode.BAD_REQUEST, "Invalid problem zip: " + e.getMessage());
             }
-            
-            boolean hasConfig = entries.contains("config.yml") || entries.contains("config.yaml");
-            boolean hasStatement = entries.contains("statement.md");
+
+            boolean hasConfig = entries.contains(CONFIG_FILE) || entries.contains("config.yaml");
+            boolean hasStatement = entries.contains(STATEMENT_FILE);
             boolean hasTestcases = entries.stream().anyMatch(s -> s.startsWith("testcases/"));
 
             if (!hasConfig || !hasStatement || !hasTestcases) {
                 throw new BusinessException(CommonErrorCode.BAD_REQUEST, "Invalid problem zip structure. Must contain config.yml, statement.md and testcases/");
             }
+
+            // 上传到 S3
+            String key = "problem/" + problemId + ".zip";
+            String eTag = uploadFile(key, zip);
+            problemZipReader.invalidate(problemId);
+            log.info("Problem zip uploaded to S3: {} ({} bytes)", key, Files.size(zip));
+
+            publishProblemObjects(problemId, zip, eTag);
+            return eTag;
+        } finally {
+            Files.deleteIfExists(zip);
         }
+    }
 
-        // 上传到 S3
-        String key = "problem/" + problemId + ".zip";
+    /**
+     * 发布题面、配置与测试点清单
+     * @param eTag 压缩包 ETag
+     */
+    private void publishProblemObjects(Long problemId, Path zip, String eTag) throws IOException {
+        List<TestCaseInfo> testCases = new ArrayList<>();
+        List<ProblemFile> files = new ArrayList<>();
+        ProblemConfig config;
+        try (ZipFile zf = new ZipFile(zip.toFile())) {
+            Map<String, String> hashes = new HashMap<>();
+            List<? extends ZipEntry> dataEntries = zf.stream()
+                    .filter(e -> !e.isDirectory() && !e.getName().equals(STATEMENT_FILE))
+                    .sorted(Comparator.comparing(ZipEntry::getName))
+                    .collect(Collectors.toList());
+            for (ZipEntry e : dataEntries) {
+                String sha = sha256(zf, e);
+                hashes.put(e.getName(), sha);
+                files.add(new ProblemFile(e.getName(), e.getSize(), sha));
+            }
+
+            ZipEntry configEntry = zf.getEntry(CONFIG_FILE);
+            if (configEntry == null) configEntry = zf.getEntry("config.yaml");
+            byte[] configBytes;
+            try (InputStream is = zf.getInputStream(configEntry)) {
+                configBytes = is.readAllBytes();
+            }
+            config = yamlMapper.readValue(configBytes, ProblemConfig.class);
+            byte[] statementBytes;
+            try (InputStream is = zf.getInputStream(zf.getEntry(STATEMENT_FILE))) {
+                statementBytes = is.readAllBytes();
+            }
+
+            List<? extends ZipEntry> inputs = zf.stream()
+                    .filter(e -> !e.isDirectory())
+                    .filter(e -> e.getName().startsWith("testcases/") && e.getName().endsWith(".in"))
+                    .sorted(Comparator.comparing(ZipEntry::getName))
+                    .collect(Collectors.toList());
+            for (ZipEntry in : inputs) {
+                String name = in.getName().substring("testcases/".length(), in.getName().length() - ".in".length());
+                ZipEntry out = zf.getEntry("testcases/" + name + ".out");
+                testCases.add(new TestCaseInfo(name, in.getSize(), out == null ? 0L : out.getSize(),
+                        hashes.get(in.getName()), out == null ? null : hashes.get(out.getName())));
+            }
+
+            uploadTestdata(zf, dataEntries, hashes);
+
+            putProblemObject(problemId, STATEMENT_FILE, statementBytes, "text/markdown; charset=utf-8", eTag);
+            putProblemObject(problemId, CONFIG_FILE, configBytes, "application/yaml", eTag);
+        }
+        ProblemMetadata manifest = new ProblemMetadata(problemId, eTag, config, testCases, files);
+        putProblemObject(problemId, MANIFEST_FILE, manifestMapper.writeValueAsBytes(manifest), "application/json", eTag);
+        log.info("Problem {} objects published ({} testcases, version={})", problemId, testCases.size(), eTag);
+    }
+
+    /**
+     * 并行上传 testdata 中还没有的内容
+     */
+    private void uploadTestdata(ZipFile zf, List<? extends ZipEntry> entries, Map<String, String> hashes) throws IOException {
+        String bucket = s3Properties.getBucket();
+        Set<String> seen = new HashSet<>();
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (ZipEntry e : entries) {
+            String key = testdataKey(hashes.get(e.getName()));
+            if (!seen.add(key)) continue;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    s3Client.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build());
+                    return false;
+                } catch (NoSuchKeyException ignored) {
+                    // 新内容
+                }
+                s3Client.putObject(PutObjectRequest.builder().bucket(bucket).key(key).build(),
+                        RequestBody.fromContentProvider(() -> {
+                            try {
+                                return zf.getInputStream(e);
+                            } catch (IOException ex) {
+                                throw new UncheckedIOException(ex);
+                            }
+                        }, e.getSize(), "application/octet-stream"));
+                return true;
+            }, uploadExecutor));
+        }
+        int uploaded = 0;
+        try {
+            for (CompletableFuture<Boolean> f : futures) {
+                if (f.join()) uploaded++;
+            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new IOException("Failed to upload testdata", cause);
+        }
+        log.info("Testdata uploaded: {} new of {} distinct files", uploaded, futures.size());
+    }
+
+    /**
+     * 按内容寻址的题目文件 key，不同题目、不同版本的相同内容共用一个对象
+     */
+    public static String testdataKey(String sha256) {
+        return "testdata/" + sha256;
+    }
+
+    private static String sha256(ZipFile zf, ZipEntry e) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        try (InputStream is = new DigestInputStream(zf.getInputStream(e), md)) {
+            is.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static String problemObjectKey(Long problemId, String name) {
+        return "problem/" + problemId + "/" + name;
+    }
+
+    private void putProblemObject(Long problemId, String name, byte[] content, String contentType, String eTag) throws IOException {
+        String key = problemObjectKey(problemId, name);
         try {
             s3Client.putObject(PutObjectRequest.builder()
                     .bucket(s3Properties.getBucket())
                     .key(key)
-                    .build(), RequestBody.fromBytes(zipBytes));
-            log.info("Problem zip uploaded to S3: {}", key);
+                    .contentType(contentType)
+                    .metadata(Map.of(ZIP_ETAG_METADATA, eTag))
+                    .build(), RequestBody.fromBytes(content));
         } catch (S3Exception e) {
-            log.error("Failed to upload problem zip to S3", e);
-            throw new IOException("Failed to upload problem zip", e);
+            throw new IOException("Failed to upload " + key, e);
         }
     }
 
+    /**
+     * 上传本地文件；超过一个分片大小时用分片上传，分片并行发送，每个分片直接从文件读取
+     * @return 对象 ETag
+     */
+    private String uploadFile(String key, Path file) throws IOException {
+        long size = Files.size(file);
+        long partSize = Math.max(MIN_PART_SIZE, s3Properties.getMultipartPartSize());
+        String bucket = s3Properties.getBucket();
+        if (size <= partSize) {
+            try {
+                return s3Client.putObject(PutObjectRequest.builder().bucket(bucket).key(key).build(),
+                        RequestBody.fromFile(file)).eTag();
+            } catch (S3Exception e) {
+                throw new IOException("Failed to upload " + key, e);
+            }
+        }
+
+        String uploadId;
+        try {
+            uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucket).key(key).build()).uploadId();
+        } catch (S3Exception e) {
+            throw new IOException("Failed to start multipart upload of " + key, e);
+        }
+        try {
+            int parts = (int) ((size + partSize - 1) / partSize);
+            List<CompletableFuture<CompletedPart>> futures = new ArrayList<>(parts);
+            for (int i = 0; i < parts; i++) {
+                int partNumber = i + 1;
+                long offset = i * partSize;
+                long length = Math.min(partSize, size - offset);
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    String eTag = s3Client.uploadPart(UploadPartRequest.builder()
+                                    .bucket(bucket).key(key).uploadId(uploadId)
+                                    .partNumber(partNumber).contentLength(length).build(),
+                            RequestBody.fromContentProvider(() -> openRange(file, offset, length), length, "application/zip")).eTag();
+                    return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+                }, uploadExecutor));
+            }
+            List<CompletedPart> completed = new ArrayList<>(parts);
+            for (CompletableFuture<CompletedPart> f : futures) completed.add(f.join());
+
+            return s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket).key(key).uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build())
+                    .build()).eTag();
+        } catch (CompletionException | S3Exception e) {
+            try {
+                s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(bucket).key(key).uploadId(uploadId).build());
+            } catch (S3Exception ex) {
+                log.warn("Failed to abort multipart upload {} of {}", uploadId, key, ex);
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            throw new IOException("Failed to upload " + key, cause);
+        }
+    }
+
+    // 文件中 [offset, offset + length) 的输入流
+    private static InputStream openRange(Path file, long offset, long length) {
+        try {
+            FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+            ch.position(offset);
+            return new FilterInputStream(Channels.newInputStream(ch)) {
+                private long remaining = length;
+
+                @Override
+                public int read() throws IOException {
+                    if (remaining <= 0) return -1;
+                    int b = super.read();
+                    if (b >= 0) remaining--;
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buf, int off, int len) throws IOException {
+                    if (remaining <= 0) return -1;
+                    int n = super.read(buf, off, (int) Math.min(len, remaining));
+                    if (n > 0) remaining -= n;
+                    return n;
+                }
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdown();
+    }
+
     /**
      * 保存提交的代码文件
      * @param submissionId 提交ID
@@ -126,42 +413,56 @@ public class FileSystemManager {
 
     /**
      * 读取题目文件流
+     * <p>
+     * 题面与配置优先读取独立对象，其 {@code zip-etag} 与压缩包当前 ETag 一致时才使用；
+     * 没有独立对象（旧数据）或版本不一致（新压缩包的对象尚未写完）时从压缩包中读取。
      * @param problemId 题目ID
      * @param relativePath 相对路径
      * @return 文件输入流
      * @throws IOException IO异常   
      */
     public InputStream getProblemFileStream(Long problemId, String relativePath) throws IOException {
-        String key = "problem/" + problemId + ".zip";
-        
-        ResponseBytes<GetObjectResponse> objectBytes;
+        if (STATEMENT_FILE.equals(relativePath) || CONFIG_FILE.equals(relativePath)) {
+            InputStream is = getProblemObject(problemId, relativePath, getProblemETag(problemId));
+            if (is != null) return is;
+        }
+        return problemZipReader.open(problemId, relativePath);
+    }
+
+    // 独立对象不存在，或 version 不为 null 且与对象记录的压缩包 ETag 不一致时返回 null
+    private InputStream getProblemObject(Long problemId, String name, String version) throws IOException {
+        String key = problemObjectKey(problemId, name);
+        ResponseInputStream<GetObjectResponse> is;
         try {
-            objectBytes = s3Client.getObjectAsBytes(GetObjectRequest.builder()
+            is = s3Client.getObject(GetObjectRequest.builder()
                     .bucket(s3Properties.getBucket())
                     .key(key)
                     .build());
         } catch (NoSuchKeyException e) {
-             throw new BusinessException(CommonErrorCode.RESOURCE_NOT_FOUND, "Problem zip not found");
+            return null;
         } catch (S3Exception e) {
-            throw new IOException("Failed to download problem zip", e);
+            throw new IOException("Failed to get " + key, e);
+        }
+        if (version != null && !version.equals(is.response().metadata().get(ZIP_ETAG_METADATA))) {
+            is.abort();
+            return null;
         }
+        return is;
+    }
 
-        ByteArrayInputStream bais = new ByteArrayInputStream(objectBytes.asByteArray());
-        ZipInputStream zis = new ZipInputStream(bais);
-        ZipEntry entry;
-        while ((entry = zis.getNextEntry()) != null) {
-            if (entry.getName().equals(relativePath)) {
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                byte[] buffer = new byte[1024];
-                int len;
-                while ((len = zis.read(buffer)) > 0) {
-                    out.write(buffer, 0, len);
-                }
-                return new ByteArrayInputStream(out.toByteArray());
-            }
+    /**
+     * 读取上传时发布的测试点清单
+     * @param problemId 题目ID
+     * @return 清单，旧数据没有清单或清单格式无法识别（早期按驼峰写入）时返回 null
+     * @throws IOException IO异常
+     */
+    public ProblemMetadata getProblemManifest(Long problemId) throws IOException {
+        try (InputStream is = getProblemObject(problemId, MANIFEST_FILE, null)) {
+            return is == null ? null : manifestMapper.readValue(is, ProblemMetadata.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Unreadable manifest of problem {}, using the zip instead: {}", problemId, e.getOriginalMessage());
+            return null;
         }
-        
-        throw new BusinessException(CommonErrorCode.RESOURCE_NOT_FOUND, "File not found in zip: " + relativePath);
     }
 
     /**
@@ -186,54 +487,136 @@ public class FileSystemManager {
     }
 
     public ProblemConfig getProblemConfig(Long problemId) throws IOException {
-        try (InputStream is = getProblemFileStream(problemId, "config.yml")) {
+        return getProblemConfig(problemId, problemZipReader.getIndex(problemId));
+    }
+
+    /**
+     * 读取与压缩包索引同一版本的配置
+     * <p>
+     * 独立的 config.yml 只在其 {@code zip-etag} 等于索引版本时使用，否则按该索引从压缩包读取，
+     * 不会把新索引与旧配置（或反过来）拼在一起。
+     */
+    private ProblemConfig getProblemConfig(Long problemId, ProblemZipReader.ZipIndex index) throws IOException {
+        try (InputStream is = getProblemObject(problemId, CONFIG_FILE, index.eTag())) {
+            if (is != null) return yamlMapper.readValue(is, ProblemConfig.class);
+        }
+        String name = index.entries().containsKey(CONFIG_FILE) ? CONFIG_FILE : "config.yaml";
+        try (InputStream is = problemZipReader.open(problemId, index, name)) {
             return yamlMapper.readValue(is, ProblemConfig.class);
-        } catch (BusinessException e) {
-             try (InputStream is = getProblemFileStream(problemId, "config.yaml")) {
-                return yamlMapper.readValue(is, ProblemConfig.class);
-            } catch (Exception ex) {
-                throw e;
-            }
         }
     }
 
+    /**
+     * 获取题目压缩包的 ETag
+     * @param problemId 题目ID
+     * @return ETag
+     * @throws IOException IO异常
+     */
+    public String getProblemETag(Long problemId) throws IOException {
+        String key = "problem/" + problemId + ".zip";
+        try {
+            return s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(s3Properties.getBucket())
+                    .key(key)
+                    .build()).eTag();
+        } catch (NoSuchKeyException e) {
+            throw new BusinessException(CommonErrorCode.RESOURCE_NOT_FOUND, "Problem zip not found");
+        } catch (S3Exception e) {
+            throw new IOException("Failed to stat problem zip", e);
+        }
+    }
+
+    /**
+     * 解析配置与测试点清单
+     * <p>
+     * 清单与压缩包版本一致时直接使用清单，否则（旧数据，或清单尚未写入）读压缩包索引。
+     * @param problemId 题目ID
+     * @param version 压缩包当前 ETag
+     * @return 题目元数据
+     * @throws IOException IO异常
+     */
+    public ProblemMetadata loadProblemMetadata(Long problemId, String version) throws IOException {
+        ProblemMetadata manifest = getProblemManifest(problemId);
+        if (manifest != null && version.equals(manifest.getVersion())) {
+            return manifest;
+        }
+
+        // 版本变化时才会调用，索引一并重建
+        problemZipReader.invalidate(problemId);
+        ProblemZipReader.ZipIndex index = problemZipReader.getIndex(problemId);
+
+        ProblemConfig config = getProblemConfig(problemId, index);
+        List<TestCaseInfo> testCases = index.list().stream()
+                .filter(e -> !e.isDirectory())
+                .filter(e -> e.name().startsWith("testcases/") && e.name().endsWith(".in"))
+                .sorted(Comparator.comparing(ProblemZipReader.Entry::name))
+                .map(e -> {
+                    String name = e.name().substring("testcases/".length(), e.name().length() - ".in".length());
+                    ProblemZipReader.Entry out = index.entries().get("testcases/" + name + ".out");
+                    return new TestCaseInfo(name, e.size(), out == null ? 0L : out.size(), null, null);
+                })
+                .collect(Collectors.toList());
+        return new ProblemMetadata(problemId, index.eTag(), config, testCases, null);
+    }
+
     /**
      * 删除题目数据
+     * <p>
+     * testdata 下的内容可能被其他题目或版本引用，不在这里删除。
      * @param problemId 题目ID
      */
     public void deleteProblemData(Long problemId) {
         String key = "problem/" + problemId + ".zip";
+        problemZipReader.invalidate(problemId);
         try {
-            s3Client.deleteObject(DeleteObjectRequest.builder()
+            s3Client.deleteObjects(DeleteObjectsRequest.builder()
                     .bucket(s3Properties.getBucket())
-                    .key(key)
+                    .delete(Delete.builder().objects(
+                            Stream.of(key,
+                                    problemObjectKey(problemId, MANIFEST_FILE),
+                                    problemObjectKey(problemId, CONFIG_FILE),
+                                    problemObjectKey(problemId, STATEMENT_FILE))
+                                    .map(k -> ObjectIdentifier.builder().key(k).build())
+                                    .collect(Collectors.toList())).build())
                     .build());
         } catch (S3Exception e) {
             log.error("Failed to delete problem data for problemId: " + problemId, e);
         }
     }
 
-    public void saveSubmissionConfig(Long submissionId, SubmissionConfig config) throws IOException {
+    /**
+     * 保存评测结果
+     * @return 写入的 JSON
+     */
+    public byte[] saveSubmissionConfig(Long submissionId, SubmissionConfig config) throws IOException {
         String key = "submission/" + submissionId + "/result.json";
-        String json = jsonMapper.writeValueAsString(config);
+        byte[] json = jsonMapper.writeValueAsBytes(config);
         try {
             s3Client.putObject(PutObjectRequest.builder()
                     .bucket(s3Properties.getBucket())
                     .key(key)
-                    .build(), RequestBody.fromString(json, StandardCharsets.UTF_8));
+                    .contentType("application/json")
+                    .build(), RequestBody.fromBytes(json));
         } catch (S3Exception e) {
             throw new IOException("Failed to save submission config", e);
         }
+        return json;
     }
 
     public SubmissionConfig getSubmissionConfig(Long submissionId) throws IOException {
+        return jsonMapper.readValue(getSubmissionConfigJson(submissionId), SubmissionConfig.class);
+    }
+
+    /**
+     * 读取评测结果的原始 JSON
+     */
+    public byte[] getSubmissionConfigJson(Long submissionId) throws IOException {
         String key = "submission/" + submissionId + "/result.json";
         try {
-            InputStream is = s3Client.getObject(GetObjectRequest.builder()
+            return s3Client.getObjectAsBytes(GetObjectRequest.builder()
                     .bucket(s3Properties.getBucket())
                     .key(key)
-                    .build());
-            return jsonMapper.readValue(is, SubmissionConfig.class);
+                    .build()).asByteArray();
         } catch (NoSuchKeyException e) {
             throw new BusinessException(CommonErrorCode.RESOURCE_NOT_FOUND, "Submission result not found");
         } catch (S3Exception e) {
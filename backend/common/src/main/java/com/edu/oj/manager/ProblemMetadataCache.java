@@ -0,0 +1,61 @@
+package com.edu.oj.manager;
+
+import com.edu.oj.entity.ProblemMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 题目元数据缓存
+ * <p>
+ * 每个题目版本（压缩包 ETag）只解析一次配置与测试点清单，之后直接从内存返回。
+ * 每次读取用一次 HEAD 请求校验版本，其他实例上传的新数据也能被发现。
+ */
+@Component
+@Slf4j
+public class ProblemMetadataCache {
+
+    @Autowired
+    private FileSystemManager fileSystemManager;
+
+    private final ConcurrentMap<Long, ProblemMetadata> cache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Object> loadLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 获取题目元数据
+     * @param problemId 题目ID
+     * @return 题目元数据
+     * @throws IOException IO异常
+     */
+    public ProblemMetadata get(Long problemId) throws IOException {
+        String version = fileSystemManager.getProblemETag(problemId);
+        ProblemMetadata cached = cache.get(problemId);
+        if (cached != null && cached.getVersion().equals(version)) {
+            return cached;
+        }
+
+        Object lock = loadLocks.computeIfAbsent(problemId, k -> new Object());
+        synchronized (lock) {
+            cached = cache.get(problemId);
+            if (cached != null && cached.getVersion().equals(version)) {
+                return cached;
+            }
+            ProblemMetadata loaded = fileSystemManager.loadProblemMetadata(problemId, version);
+            cache.put(problemId, loaded);
+            log.info("Problem metadata cached for problemId: {} (version={})", problemId, loaded.getVersion());
+            return loaded;
+        }
+    }
+
+    /**
+     * 使题目元数据失效
+     * @param problemId 题目ID
+     */
+    public void invalidate(Long problemId) {
+        cache.remove(problemId);
+    }
+}
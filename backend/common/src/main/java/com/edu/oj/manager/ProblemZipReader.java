@@ -0,0 +1,298 @@
+package com.edu.oj.manager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.edu.oj.config.S3Properties;
+import com.edu.oj.exceptions.BusinessException;
+import com.edu.oj.exceptions.CommonErrorCode;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * 按需读取题目压缩包中的单个文件
+ * <p>
+ * 每个题目版本只用两次范围请求读取一次 ZIP 中央目录（文件名 → 偏移与大小），之后读取一个文件只需
+ * 取它的本地文件头和数据两段字节，耗时与文件大小相关，与压缩包大小无关。
+ * 范围请求带 If-Match，压缩包被替换后返回 412，此时丢弃索引重建一次。
+ * 支持 ZIP64：条目数、中央目录大小或偏移溢出时读 ZIP64 目录结束记录，单个条目的大小或偏移溢出时
+ * 读该条目的 ZIP64 扩展字段（0x0001）。
+ */
+@Component
+@Slf4j
+public class ProblemZipReader {
+
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int ZIP64_EOCD_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int ZIP64_LOCATOR = 20;
+    private static final int ZIP64_EOCD = 56;
+    private static final int ZIP64_EXTRA = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int EOCD_MIN = 22;
+    private static final int LOC_HEADER = 30;
+    // EOCD 加最长的注释
+    private static final int TAIL_SIZE = EOCD_MIN + 0xFFFF;
+
+    @Autowired
+    private S3Client s3Client;
+
+    @Autowired
+    private S3Properties s3Properties;
+
+    private final ConcurrentMap<Long, ZipIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * 打开压缩包中的一个文件
+     * @param problemId 题目ID
+     * @param name 压缩包内路径
+     * @return 解压后的文件流
+     * @throws IOException IO异常
+     */
+    public InputStream open(Long problemId, String name) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            ZipIndex index = getIndex(problemId);
+            try {
+                return read(problemId, index, name);
+            } catch (S3Exception ex) {
+                if (ex.statusCode() != 412 || attempt > 0) throw new IOException("Failed to read " + name + " of problem " + problemId, ex);
+                log.info("Problem {} zip changed, rebuilding index", problemId);
+                indexes.remove(problemId, index);
+            }
+        }
+    }
+
+    /**
+     * 按给定索引打开压缩包中的一个文件，读到的内容与索引属于同一版本
+     * <p>
+     * 压缩包已被替换时抛出 IOException，不会改读新版本。
+     * @param problemId 题目ID
+     * @param index 压缩包索引
+     * @param name 压缩包内路径
+     * @return 解压后的文件流
+     * @throws IOException IO异常
+     */
+    public InputStream open(Long problemId, ZipIndex index, String name) throws IOException {
+        try {
+            return read(problemId, index, name);
+        } catch (S3Exception ex) {
+            indexes.remove(problemId, index);
+            throw new IOException("Failed to read " + name + " of problem " + problemId + " (version=" + index.eTag() + ")", ex);
+        }
+    }
+
+    private InputStream read(Long problemId, ZipIndex index, String name) throws IOException {
+        Entry e = index.entries().get(name);
+        if (e == null || name.endsWith("/")) {
+            throw new BusinessException(CommonErrorCode.RESOURCE_NOT_FOUND, "File not found in zip: " + name);
+        }
+        return read(problemId, index.eTag(), e);
+    }
+
+    /**
+     * 获取题目压缩包的索引，首次访问时读取中央目录
+     */
+    public ZipIndex getIndex(Long problemId) throws IOException {
+        ZipIndex index = indexes.get(problemId);
+        if (index != null) return index;
+        index = buildIndex(problemId);
+        indexes.put(problemId, index);
+        return index;
+    }
+
+    public void invalidate(Long problemId) {
+        indexes.remove(problemId);
+    }
+
+    private ZipIndex buildIndex(Long problemId) throws IOException {
+        String key = key(problemId);
+        ResponseBytes<GetObjectResponse> tail = get(key, "bytes=-" + TAIL_SIZE, null);
+        String eTag = tail.response().eTag();
+        byte[] t = tail.asByteArray();
+
+        int eocd = -1;
+        for (int i = t.length - EOCD_MIN; i >= 0; i--) {
+            if (le(t).getInt(i) == EOCD_SIG) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) throw new IOException("Problem " + problemId + " zip has no end of central directory");
+        ByteBuffer b = le(t);
+        long count = Short.toUnsignedInt(b.getShort(eocd + 10));
+        long cenSize = Integer.toUnsignedLong(b.getInt(eocd + 12));
+        long cenOffset = Integer.toUnsignedLong(b.getInt(eocd + 16));
+        long objectSize = totalSize(tail.response(), t.length);
+        long tailStart = objectSize - t.length;
+
+        if (count == 0xFFFF || cenSize == ZIP64_MAGIC || cenOffset == ZIP64_MAGIC) {
+            // ZIP64 定位记录紧挨在目录结束记录之前，指向 ZIP64 目录结束记录
+            int locator = eocd - ZIP64_LOCATOR;
+            if (locator < 0 || b.getInt(locator) != ZIP64_LOCATOR_SIG) {
+                throw new IOException("Problem " + problemId + " zip has no ZIP64 end of central directory locator");
+            }
+            long zip64Offset = b.getLong(locator + 8);
+            ByteBuffer z = zip64Offset >= tailStart
+                    ? le(t).position((int) (zip64Offset - tailStart)).slice().order(ByteOrder.LITTLE_ENDIAN)
+                    : le(get(key, "bytes=" + zip64Offset + "-" + (zip64Offset + ZIP64_EOCD - 1), eTag).asByteArray());
+            if (z.getInt(0) != ZIP64_EOCD_SIG) {
+                throw new IOException("Problem " + problemId + " zip has a corrupted ZIP64 end of central directory");
+            }
+            count = z.getLong(32);
+            cenSize = z.getLong(40);
+            cenOffset = z.getLong(48);
+        }
+        if (count > Integer.MAX_VALUE / 2 || cenSize > Integer.MAX_VALUE) {
+            throw new IOException("Problem " + problemId + " zip central directory is too large");
+        }
+
+        // 中央目录通常已在末尾这段里，否则再取一次
+        ByteBuffer cen;
+        if (cenOffset >= tailStart) {
+            cen = le(t).position((int) (cenOffset - tailStart)).slice().order(ByteOrder.LITTLE_ENDIAN);
+        } else {
+            byte[] c = get(key, "bytes=" + cenOffset + "-" + (cenOffset + cenSize - 1), eTag).asByteArray();
+            cen = le(c);
+        }
+
+        Map<String, Entry> entries = new LinkedHashMap<>((int) count * 2);
+        int p = 0;
+        for (int i = 0; i < count; i++) {
+            if (cen.getInt(p) != CEN_SIG) throw new IOException("Problem " + problemId + " zip has a corrupted central directory");
+            int method = Short.toUnsignedInt(cen.getShort(p + 10));
+            long compressedSize = Integer.toUnsignedLong(cen.getInt(p + 20));
+            long size = Integer.toUnsignedLong(cen.getInt(p + 24));
+            int nameLen = Short.toUnsignedInt(cen.getShort(p + 28));
+            int extraLen = Short.toUnsignedInt(cen.getShort(p + 30));
+            int commentLen = Short.toUnsignedInt(cen.getShort(p + 32));
+            long localOffset = Integer.toUnsignedLong(cen.getInt(p + 42));
+            byte[] nameBytes = new byte[nameLen];
+            cen.get(p + 46, nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+            if (size == ZIP64_MAGIC || compressedSize == ZIP64_MAGIC || localOffset == ZIP64_MAGIC) {
+                // 扩展字段里只有溢出的值，按原始大小、压缩大小、本地头偏移的顺序
+                int x = findExtra(cen, p + 46 + nameLen, extraLen, ZIP64_EXTRA);
+                if (x < 0) throw new IOException("Problem " + problemId + " zip entry " + name + " has no ZIP64 extra field");
+                int end = x + 4 + Short.toUnsignedInt(cen.getShort(x + 2));
+                int q = x + 4;
+                if (size == ZIP64_MAGIC && q + 8 <= end) { size = cen.getLong(q); q += 8; }
+                if (compressedSize == ZIP64_MAGIC && q + 8 <= end) { compressedSize = cen.getLong(q); q += 8; }
+                if (localOffset == ZIP64_MAGIC && q + 8 <= end) { localOffset = cen.getLong(q); q += 8; }
+                if (size == ZIP64_MAGIC || compressedSize == ZIP64_MAGIC || localOffset == ZIP64_MAGIC) {
+                    throw new IOException("Problem " + problemId + " zip entry " + name + " has a truncated ZIP64 extra field");
+                }
+            }
+            entries.put(name, new Entry(name, method, compressedSize, size, localOffset));
+            p += 46 + nameLen + extraLen + commentLen;
+        }
+        log.info("Problem {} zip indexed: {} entries (version={})", problemId, entries.size(), eTag);
+        return new ZipIndex(eTag, entries);
+    }
+
+    // 在 [start, start + len) 的扩展字段中找指定 ID 的头部位置，没有时返回 -1
+    private static int findExtra(ByteBuffer b, int start, int len, int id) {
+        int p = start;
+        while (p + 4 <= start + len) {
+            int size = Short.toUnsignedInt(b.getShort(p + 2));
+            if (Short.toUnsignedInt(b.getShort(p)) == id) return p;
+            p += 4 + size;
+        }
+        return -1;
+    }
+
+    private InputStream read(Long problemId, String eTag, Entry e) throws IOException {
+        String key = key(problemId);
+        ByteBuffer loc = le(get(key, "bytes=" + e.localOffset() + "-" + (e.localOffset() + LOC_HEADER - 1), eTag).asByteArray());
+        if (loc.getInt(0) != LOC_SIG) throw new IOException("Problem " + problemId + " zip has a corrupted entry: " + e.name());
+        long dataStart = e.localOffset() + LOC_HEADER
+                + Short.toUnsignedInt(loc.getShort(26)) + Short.toUnsignedInt(loc.getShort(28));
+
+        byte[] data = e.compressedSize() == 0 ? new byte[0]
+                : get(key, "bytes=" + dataStart + "-" + (dataStart + e.compressedSize() - 1), eTag).asByteArray();
+        return switch (e.method()) {
+            case 0 -> new ByteArrayInputStream(data);
+            case 8 -> {
+                Inflater inflater = new Inflater(true);
+                yield new InflaterInputStream(new ByteArrayInputStream(data), inflater) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        inflater.end();
+                    }
+                };
+            }
+            default -> throw new IOException("Unsupported compression method " + e.method() + " for " + e.name());
+        };
+    }
+
+    private ResponseBytes<GetObjectResponse> get(String key, String range, String ifMatch) throws IOException {
+        try {
+            return s3Client.getObjectAsBytes(GetObjectRequest.builder()
+                    .bucket(s3Properties.getBucket())
+                    .key(key)
+                    .range(range)
+                    .ifMatch(ifMatch)
+                    .build());
+        } catch (NoSuchKeyException e) {
+            throw new BusinessException(CommonErrorCode.RESOURCE_NOT_FOUND, "Problem zip not found");
+        } catch (S3Exception e) {
+            if (e.statusCode() == 412) throw e;
+            throw new IOException("Failed to read " + key + " (" + range + ")", e);
+        }
+    }
+
+    // Content-Range: bytes a-b/total
+    private static long totalSize(GetObjectResponse r, int length) {
+        String range = r.contentRange();
+        if (range != null && range.contains("/")) {
+            return Long.parseLong(range.substring(range.lastIndexOf('/') + 1).trim());
+        }
+        return length; // 对象比请求的范围小时返回整个对象
+    }
+
+    private static ByteBuffer le(byte[] b) {
+        return ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static String key(Long problemId) {
+        return "problem/" + problemId + ".zip";
+    }
+
+    /**
+     * @param eTag    建立索引时压缩包的 ETag，即题目版本
+     * @param entries 压缩包内路径 → 条目，按中央目录顺序
+     */
+    public record ZipIndex(String eTag, Map<String, Entry> entries) {
+        public Collection<Entry> list() {
+            return entries.values();
+        }
+    }
+
+    public record Entry(String name, int method, long compressedSize, long size, long localOffset) {
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+}
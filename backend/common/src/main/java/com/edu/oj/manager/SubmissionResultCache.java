@@ -0,0 +1,78 @@
+package com.edu.oj.manager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+/**
+ * 已结束提交的评测结果缓存
+ * <p>
+ * 缓存 result.json 的原始字节与 ETag，按字节数限制总大小，超出时淘汰最久未访问的。
+ * 结果只会在重测时改变，重测会使 submissions.judge_seq 加一：条目记录写入时的评测序号，
+ * 读取时与数据库中的序号不同即视为未命中，其他实例发起的重测也能立即生效。
+ */
+@Component
+public class SubmissionResultCache {
+
+    private final long maxBytes;
+
+    // 访问顺序，队首最久未访问
+    private final LinkedHashMap<Long, CachedResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    public SubmissionResultCache(@Value("${oj.result-cache.max-bytes:67108864}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param judgeSeq 数据库中提交当前的评测序号
+     * @return 缓存的结果，不存在或属于更早的评测时返回 null
+     */
+    public synchronized CachedResult get(Long submissionId, int judgeSeq) {
+        CachedResult r = entries.get(submissionId);
+        if (r == null) return null;
+        if (r.judgeSeq() != judgeSeq) {
+            remove(submissionId);
+            return null;
+        }
+        return r;
+    }
+
+    /**
+     * 缓存结果 JSON，单个超过总容量 1/8 的结果不缓存
+     * @param judgeSeq 结果所属评测的序号
+     * @return 带 ETag 的结果
+     */
+    public CachedResult put(Long submissionId, int judgeSeq, byte[] json) {
+        CachedResult r = new CachedResult(json, "\"" + DigestUtils.md5DigestAsHex(json) + "\"", judgeSeq);
+        if (json.length > maxBytes / 8) return r;
+        synchronized (this) {
+            remove(submissionId);
+            entries.put(submissionId, r);
+            bytes += json.length;
+            Iterator<Map.Entry<Long, CachedResult>> it = entries.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                bytes -= it.next().getValue().json().length;
+                it.remove();
+            }
+        }
+        return r;
+    }
+
+    private void remove(Long submissionId) {
+        CachedResult old = entries.remove(submissionId);
+        if (old != null) bytes -= old.json().length;
+    }
+
+    /**
+     * @param json  result.json 的内容
+     * @param etag  强 ETag（带引号）
+     * @param judgeSeq 结果所属评测的序号
+     */
+    public record CachedResult(byte[] json, String etag, int judgeSeq) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.edu.oj.message;
+
+/**
+ * Judge lane of a submission, each lane has its own submission topic.
+ * <p>
+ * User submissions go to NORMAL and rejudges to REJUDGE. There is no contest lane yet:
+ * nothing in the backend marks a submission as part of a contest.
+ */
+public enum Priority {
+    NORMAL,
+    REJUDGE;
+
+    /** NORMAL keeps the base topic name, the others append their lane, e.g. submission-queue-rejudge. */
+    public String topic(String baseTopic) {
+        return this == NORMAL ? baseTopic : baseTopic + "-" + name().toLowerCase();
+    }
+}
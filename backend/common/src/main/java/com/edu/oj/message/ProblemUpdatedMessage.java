@@ -0,0 +1,18 @@
+package com.edu.oj.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Sent after the data of a problem was created or replaced, so workers can load it
+ * before submissions arrive.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProblemUpdatedMessage {
+    public Long problemId;
+    /** ETag of the new problem zip, the version workers cache the data under. */
+    public String version;
+}
@@ -17,6 +17,9 @@ public class ResultMessage {
     private Long timeUsed;
     private Long memoryUsed;
     private Long status;
+    private Long compileTimeUsed; // ms，仅 id=0 时有值
+    private Long checkerCompileTimeUsed; // ms，有 checker 时仅 id=0 有值
+    private Long checkerTimeUsed; // ms，本测试点 checker 运行耗时
 
     private String input;
     private String expectedOutput;
@@ -0,0 +1,21 @@
+package com.edu.oj.response;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 计数查询结果，计数是最终一致的
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CountResponse {
+    private Long count;
+    // 读取计数表的时间
+    private LocalDateTime asOf;
+    // 计数与真实值的误差最长持续的时间（毫秒），即校准间隔；正常运行时新提交在刷新间隔加读缓存时间内可见
+    private Long maxStalenessMs;
+}
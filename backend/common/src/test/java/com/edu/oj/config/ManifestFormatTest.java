@@ -0,0 +1,43 @@
+package com.edu.oj.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.edu.oj.entity.ProblemConfig;
+import com.edu.oj.entity.ProblemFile;
+import com.edu.oj.entity.ProblemMetadata;
+import com.edu.oj.entity.TestCaseInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 后端写出的 manifest.json 与评测机测试用的样例逐字段一致
+ * <p>
+ * 样例在 judge_worker/src/test/resources/problem-manifest.json，评测机的
+ * ManifestFormatTest 用自己的实体读取同一份文件，两边的字段命名因此不会再分叉。
+ */
+class ManifestFormatTest {
+
+    // 本模块目录为 backend/common
+    private static final Path WORKER_FIXTURE = Paths.get("../../judge_worker/src/test/resources/problem-manifest.json");
+
+    @Test
+    void backendWritesWhatWorkerReads() throws IOException {
+        ObjectMapper mapper = new CommonConfig().manifestMapper();
+        ProblemConfig config = new ProblemConfig(42L, "A + B", 2, 1000, 256, "float", 1e-4, 1e-5,
+                "checker.cpp", 3000, 128);
+        String in = "a".repeat(64);
+        ProblemMetadata manifest = new ProblemMetadata(42L, "\"3f2a9c\"", config,
+                List.of(new TestCaseInfo("1", 4L, 2L, in, "b".repeat(64))),
+                List.of(new ProblemFile("checker.cpp", 120L, "c".repeat(64)), new ProblemFile("testcases/1.in", 4L, in)));
+
+        assertEquals(mapper.readTree(WORKER_FIXTURE.toFile()), mapper.readTree(mapper.writeValueAsBytes(manifest)));
+        // 后端自己也能读回
+        assertEquals(manifest, mapper.readValue(WORKER_FIXTURE.toFile(), ProblemMetadata.class));
+    }
+}
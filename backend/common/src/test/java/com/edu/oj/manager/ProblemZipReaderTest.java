@@ -0,0 +1,234 @@
+package com.edu.oj.manager;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.edu.oj.config.S3Properties;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+/**
+ * 用范围请求读出的条目与 java.util.zip 读出的逐字节比较
+ */
+class ProblemZipReaderTest {
+
+    private static final Long PROBLEM_ID = 1L;
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void storedEntries() throws IOException {
+        assertSameAsZipFile(write(ZipEntry.STORED, files(), null));
+    }
+
+    @Test
+    void deflatedEntries() throws IOException {
+        assertSameAsZipFile(write(ZipEntry.DEFLATED, files(), null));
+    }
+
+    @Test
+    void archiveComment() throws IOException {
+        // 注释把目录结束记录推到末尾 64KB 附近
+        assertSameAsZipFile(write(ZipEntry.DEFLATED, files(), "c".repeat(65_000)));
+    }
+
+    @Test
+    void zip64EndOfCentralDirectory() throws IOException {
+        // 超过 65535 个条目时 java.util.zip 写 ZIP64 目录结束记录
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        for (int i = 0; i < 70_000; i++) {
+            files.put("testcases/" + i + ".in", (i + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] zip = write(ZipEntry.DEFLATED, files, null);
+        ProblemZipReader reader = reader(zip);
+        assertEquals(70_000, reader.getIndex(PROBLEM_ID).entries().size());
+        assertSameAsZipFile(zip, reader, List.of("testcases/0.in", "testcases/65535.in", "testcases/69999.in"));
+    }
+
+    @Test
+    void zip64ExtraFields() throws IOException {
+        // 每个条目的大小与偏移都放在 0x0001 扩展字段里
+        assertSameAsZipFile(writeZip64(files()));
+    }
+
+    private void assertSameAsZipFile(byte[] zip) throws IOException {
+        ProblemZipReader reader = reader(zip);
+        List<String> names = new ArrayList<>(reader.getIndex(PROBLEM_ID).entries().keySet());
+        assertEquals(files().size(), names.size());
+        assertSameAsZipFile(zip, reader, names);
+    }
+
+    private void assertSameAsZipFile(byte[] zip, ProblemZipReader reader, List<String> names) throws IOException {
+        Path file = Files.write(tmp.resolve("problem.zip"), zip);
+        try (ZipFile zf = new ZipFile(file.toFile())) {
+            for (String name : names) {
+                byte[] expected;
+                try (InputStream is = zf.getInputStream(zf.getEntry(name))) {
+                    expected = is.readAllBytes();
+                }
+                try (InputStream is = reader.open(PROBLEM_ID, name)) {
+                    assertArrayEquals(expected, is.readAllBytes(), name);
+                }
+                assertEquals(zf.getEntry(name).getSize(), reader.getIndex(PROBLEM_ID).entries().get(name).size(), name);
+            }
+        }
+    }
+
+    private static Map<String, byte[]> files() {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("config.yml", "time_limit: 1000\nmemory_limit: 256\n".getBytes(StandardCharsets.UTF_8));
+        files.put("statement.md", "# A + B\n".repeat(200).getBytes(StandardCharsets.UTF_8));
+        files.put("testcases/1.in", "1 2\n".getBytes(StandardCharsets.UTF_8));
+        files.put("testcases/1.out", "3\n".getBytes(StandardCharsets.UTF_8));
+        files.put("testcases/empty.in", new byte[0]);
+        byte[] random = new byte[300_000];
+        new Random(1).nextBytes(random);
+        files.put("testcases/2.in", random);
+        return files;
+    }
+
+    private static byte[] write(int method, Map<String, byte[]> files, String comment) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bos)) {
+            for (Map.Entry<String, byte[]> f : files.entrySet()) {
+                ZipEntry e = new ZipEntry(f.getKey());
+                e.setMethod(method);
+                if (method == ZipEntry.STORED) {
+                    e.setSize(f.getValue().length);
+                    e.setCompressedSize(f.getValue().length);
+                    e.setCrc(crc(f.getValue()));
+                }
+                zos.putNextEntry(e);
+                zos.write(f.getValue());
+                zos.closeEntry();
+            }
+            if (comment != null) zos.setComment(comment);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * 手写的 ZIP64 压缩包：本地头与中央目录中的大小、偏移都为 0xFFFFFFFF，真实值在扩展字段里，
+     * 条目数与中央目录位置在 ZIP64 目录结束记录里
+     */
+    private static byte[] writeZip64(Map<String, byte[]> files) {
+        ByteBuffer out = ByteBuffer.allocate(1 << 22).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer cen = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        for (Map.Entry<String, byte[]> f : files.entrySet()) {
+            byte[] name = f.getKey().getBytes(StandardCharsets.UTF_8);
+            boolean deflate = f.getValue().length > 100;
+            byte[] data = deflate ? deflate(f.getValue()) : f.getValue();
+            int method = deflate ? ZipEntry.DEFLATED : ZipEntry.STORED;
+            long crc = crc(f.getValue());
+            long offset = out.position();
+
+            out.putInt(0x04034b50).putShort((short) 45).putShort((short) 0).putShort((short) method)
+                    .putShort((short) 0).putShort((short) 0x21).putInt((int) crc)
+                    .putInt(-1).putInt(-1).putShort((short) name.length).putShort((short) 20).put(name)
+                    .putShort((short) 1).putShort((short) 16).putLong(f.getValue().length).putLong(data.length)
+                    .put(data);
+
+            cen.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0)
+                    .putShort((short) method).putShort((short) 0).putShort((short) 0x21).putInt((int) crc)
+                    .putInt(-1).putInt(-1).putShort((short) name.length).putShort((short) 28).putShort((short) 0)
+                    .putShort((short) 0).putShort((short) 0).putInt(0).putInt(-1).put(name)
+                    .putShort((short) 1).putShort((short) 24).putLong(f.getValue().length).putLong(data.length)
+                    .putLong(offset);
+        }
+        long cenOffset = out.position();
+        int cenSize = cen.position();
+        out.put(cen.array(), 0, cenSize);
+
+        long zip64Offset = out.position();
+        out.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45).putInt(0).putInt(0)
+                .putLong(files.size()).putLong(files.size()).putLong(cenSize).putLong(cenOffset);
+        out.putInt(0x07064b50).putInt(0).putLong(zip64Offset).putInt(1);
+        out.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) -1).putShort((short) -1)
+                .putInt(-1).putInt(-1).putShort((short) 0);
+
+        byte[] zip = new byte[out.position()];
+        out.get(0, zip);
+        return zip;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        while (!deflater.finished()) {
+            bos.write(buf, 0, deflater.deflate(buf));
+        }
+        deflater.end();
+        return bos.toByteArray();
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    // 只实现范围读取的 S3 客户端，Content-Range 与 If-Match 按 S3 的规则返回
+    private static ProblemZipReader reader(byte[] zip) {
+        String eTag = "\"v1\"";
+        S3Client s3 = (S3Client) Proxy.newProxyInstance(S3Client.class.getClassLoader(), new Class<?>[]{S3Client.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("getObjectAsBytes") || !(args[0] instanceof GetObjectRequest req)) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    if (req.ifMatch() != null) assertEquals(eTag, req.ifMatch());
+                    String range = req.range().substring("bytes=".length());
+                    long from;
+                    long to;
+                    if (range.startsWith("-")) {
+                        from = Math.max(0, zip.length - Long.parseLong(range.substring(1)));
+                        to = zip.length - 1;
+                    } else {
+                        from = Long.parseLong(range.substring(0, range.indexOf('-')));
+                        to = Math.min(zip.length - 1, Long.parseLong(range.substring(range.indexOf('-') + 1)));
+                    }
+                    byte[] body = new byte[(int) (to - from + 1)];
+                    System.arraycopy(zip, (int) from, body, 0, body.length);
+                    return ResponseBytes.fromByteArray(GetObjectResponse.builder()
+                            .eTag(eTag)
+                            .contentRange("bytes " + from + "-" + to + "/" + zip.length)
+                            .build(), body);
+                });
+        S3Properties props = new S3Properties();
+        props.setBucket("oj");
+        ProblemZipReader reader = new ProblemZipReader();
+        ReflectionTestUtils.setField(reader, "s3Client", s3);
+        ReflectionTestUtils.setField(reader, "s3Properties", props);
+        return reader;
+    }
+}
@@ -0,0 +1,220 @@
+package com.edu.oj.bench;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * 提交列表分页基准：比较页码分页（LIMIT/OFFSET）与游标分页（beforeId）在不同翻页深度下的耗时
+ * <p>
+ * 只在专用的空库中运行：库名必须以 _bench 结尾，且库为空或只含本基准建的表（以 bench_marker 表标记），
+ * 否则拒绝运行。数据只追加不清空，SQL 与 SubmissionMapper 中的两条列表查询一致。
+ * 放在测试源码中，不打进应用 jar，在 backend/ 下运行：
+ * <pre>
+ * mvn -q -pl main -am test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp main/target/test-classes:$(cat main/target/cp.txt) com.edu.oj.bench.SubmissionPagingBenchmark \
+ *     jdbc:mysql://localhost:3306/oj_bench?createDatabaseIfNotExist=true oj_admin oj_token 1000000
+ * </pre>
+ */
+public class SubmissionPagingBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int RUNS = 21;
+    private static final int USERS = 1000;
+    private static final int PROBLEMS = 200;
+    private static final String SCHEMA_SUFFIX = "_bench";
+    private static final String MARKER = "bench_marker";
+
+    private static final String OFFSET_SQL = """
+            SELECT submissions.*, problems.title AS problem_title, users.username AS user_name
+            FROM (SELECT id FROM submissions ORDER BY id DESC LIMIT ? OFFSET ?) page
+            JOIN submissions ON submissions.id = page.id
+            JOIN problems ON submissions.problem_id = problems.id
+            JOIN users ON submissions.user_id = users.id
+            ORDER BY submissions.id DESC
+            """;
+
+    // 修改前的写法，作为对照
+    private static final String NAIVE_OFFSET_SQL = """
+            SELECT submissions.*, problems.title AS problem_title, users.username AS user_name
+            FROM submissions
+            JOIN problems ON submissions.problem_id = problems.id
+            JOIN users ON submissions.user_id = users.id
+            ORDER BY submissions.id DESC
+            LIMIT ? OFFSET ?
+            """;
+
+    private static final String KEYSET_SQL = """
+            SELECT page.*, problems.title AS problem_title, users.username AS user_name
+            FROM (SELECT * FROM submissions WHERE id < ? ORDER BY id DESC LIMIT ?) page
+            JOIN problems ON page.problem_id = problems.id
+            JOIN users ON page.user_id = users.id
+            ORDER BY page.id DESC
+            """;
+
+    public static void main(String[] args) throws SQLException {
+        String url = args.length > 0 ? args[0] : "jdbc:mysql://localhost:3306/oj_bench?createDatabaseIfNotExist=true";
+        String user = args.length > 1 ? args[1] : "oj_admin";
+        String password = args.length > 2 ? args[2] : "oj_token";
+        int rows = args.length > 3 ? Integer.parseInt(args[3]) : 1_000_000;
+
+        try (Connection conn = DriverManager.getConnection(url + (url.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true",
+                user, password)) {
+            seed(conn, rows);
+
+            long maxId;
+            try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT MAX(id) FROM submissions")) {
+                rs.next();
+                maxId = rs.getLong(1);
+            }
+
+            System.out.printf("%10s %14s %14s %14s%n", "depth", "naive_ms", "offset_ms", "keyset_ms");
+            for (int depth : new int[]{0, 1_000, 10_000, 100_000, rows / 2, rows - PAGE_SIZE}) {
+                if (depth < 0 || depth >= rows) continue;
+                double naive = median(conn, NAIVE_OFFSET_SQL, PAGE_SIZE, depth);
+                double offset = median(conn, OFFSET_SQL, PAGE_SIZE, depth);
+                // ID 连续，第 depth 行之前的游标为 maxId - depth + 1
+                double keyset = median(conn, KEYSET_SQL, maxId - depth + 1, PAGE_SIZE);
+                System.out.printf("%10d %14.2f %14.2f %14.2f%n", depth, naive, offset, keyset);
+            }
+        }
+    }
+
+    private static double median(Connection conn, String sql, long a, long b) throws SQLException {
+        double[] ms = new double[RUNS];
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, a);
+            ps.setLong(2, b);
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                int n = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) n++;
+                }
+                ms[i] = (System.nanoTime() - start) / 1e6;
+                if (n == 0) throw new IllegalStateException("empty page");
+            }
+        }
+        Arrays.sort(ms);
+        return ms[RUNS / 2];
+    }
+
+    // 只接受以 _bench 结尾、为空或由本基准创建的库
+    private static void checkScratchSchema(Connection conn) throws SQLException {
+        String schema;
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT DATABASE()")) {
+            rs.next();
+            schema = rs.getString(1);
+        }
+        if (schema == null || !schema.endsWith(SCHEMA_SUFFIX)) {
+            throw new IllegalStateException("Refusing to run in schema " + schema
+                    + ": use a dedicated scratch schema whose name ends with " + SCHEMA_SUFFIX);
+        }
+        boolean marked = false;
+        int tables = 0;
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT table_name FROM information_schema.tables WHERE table_schema = ?")) {
+            ps.setString(1, schema);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    tables++;
+                    if (MARKER.equalsIgnoreCase(rs.getString(1))) marked = true;
+                }
+            }
+        }
+        if (tables > 0 && !marked) {
+            throw new IllegalStateException("Refusing to run in schema " + schema
+                    + ": it has tables not created by this benchmark");
+        }
+        if (!marked) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("CREATE TABLE " + MARKER + " (id INT PRIMARY KEY)");
+            }
+        }
+    }
+
+    private static void seed(Connection conn, int rows) throws SQLException {
+        checkScratchSchema(conn);
+        long existing;
+        try (Statement st = conn.createStatement()) {
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS users (
+                        id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                        username VARCHAR(50) NOT NULL UNIQUE
+                    )""");
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS problems (
+                        id BIGINT PRIMARY KEY,
+                        title VARCHAR(100) NOT NULL
+                    )""");
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS submissions (
+                        id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                        problem_id BIGINT NOT NULL,
+                        user_id BIGINT NOT NULL,
+                        language VARCHAR(30) NOT NULL,
+                        submission_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        status VARCHAR(20) NOT NULL,
+                        score SMALLINT DEFAULT 0,
+                        verdict SMALLINT NULL,
+                        time_used INT NULL,
+                        memory_used INT NULL,
+                        INDEX idx_user_id (user_id, id),
+                        INDEX idx_problem_id (problem_id, id),
+                        INDEX idx_verdict (verdict, id)
+                    )""");
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM submissions")) {
+                rs.next();
+                existing = rs.getLong(1);
+            }
+        }
+        if (existing >= rows) return;
+
+        // 只追加缺少的行，ID 仍然连续
+        System.out.printf("Seeding %d submissions...%n", rows - existing);
+        conn.setAutoCommit(false);
+        try (PreparedStatement pu = conn.prepareStatement("INSERT IGNORE INTO users (id, username) VALUES (?, ?)");
+             PreparedStatement pp = conn.prepareStatement("INSERT IGNORE INTO problems (id, title) VALUES (?, ?)");
+             PreparedStatement ps = conn.prepareStatement("""
+                     INSERT INTO submissions (problem_id, user_id, language, status, score, verdict, time_used, memory_used)
+                     VALUES (?, ?, 'cpp', 'DONE', ?, ?, ?, ?)""")) {
+            for (int i = 1; i <= USERS; i++) {
+                pu.setLong(1, i);
+                pu.setString(2, "bench_user_" + i);
+                pu.addBatch();
+            }
+            pu.executeBatch();
+            for (int i = 1; i <= PROBLEMS; i++) {
+                pp.setLong(1, i);
+                pp.setString(2, "bench_problem_" + i);
+                pp.addBatch();
+            }
+            pp.executeBatch();
+            for (long i = existing; i < rows; i++) {
+                int verdict = i % 7 == 0 ? 1 : 0;
+                ps.setLong(1, 1 + i % PROBLEMS);
+                ps.setLong(2, 1 + (i * 31L) % USERS);
+                ps.setInt(3, verdict == 0 ? 100 : 0);
+                ps.setInt(4, verdict);
+                ps.setInt(5, (int) (i % 1000));
+                ps.setInt(6, 1024 + (int) (i % 4096));
+                ps.addBatch();
+                if (i % 10_000 == 9_999) {
+                    ps.executeBatch();
+                    conn.commit();
+                }
+            }
+            ps.executeBatch();
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        try (Statement st = conn.createStatement()) {
+            st.execute("ANALYZE TABLE submissions");
+        }
+    }
+}
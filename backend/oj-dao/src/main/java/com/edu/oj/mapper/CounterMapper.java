@@ -0,0 +1,76 @@
+package com.edu.oj.mapper;
+
+import java.util.Map;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import com.edu.oj.entity.Counter;
+
+/**
+ * 计数表 DAO，代替对整表的 COUNT(*)
+ */
+@Mapper
+public interface CounterMapper {
+    @Select("""
+            SELECT value
+            FROM counters
+            WHERE name = #{name}
+            """)
+    Long getCounter(String name);
+
+    /**
+     * 一条语句累加多个计数，不存在的计数从 0 开始
+     */
+    @Insert("""
+            <script>
+                INSERT INTO counters (name, value)
+                VALUES
+                <foreach collection="deltas" index="name" item="delta" separator=",">
+                    (#{name}, #{delta})
+                </foreach>
+                ON DUPLICATE KEY UPDATE value = value + VALUES(value)
+            </script>
+            """)
+    int addCounters(@Param("deltas") Map<String, Long> deltas);
+
+    /**
+     * 校准时直接写入计数
+     */
+    @Insert("""
+            <script>
+                INSERT INTO counters (name, value)
+                VALUES
+                <foreach collection="counters" item="c" separator=",">
+                    (#{c.name}, #{c.value})
+                </foreach>
+                ON DUPLICATE KEY UPDATE value = VALUES(value)
+            </script>
+            """)
+    int setCounters(@Param("counters") Counter[] counters);
+
+    @Select("""
+            SELECT 'submissions' AS name, COUNT(*) AS value FROM submissions
+            UNION ALL
+            SELECT 'problems', COUNT(*) FROM problems
+            UNION ALL
+            SELECT 'users', COUNT(*) FROM users
+            """)
+    Counter[] countTotals();
+
+    @Select("""
+            SELECT CONCAT('submissions:problem:', problem_id) AS name, COUNT(*) AS value
+            FROM submissions
+            GROUP BY problem_id
+            """)
+    Counter[] countSubmissionsByProblem();
+
+    @Select("""
+            SELECT CONCAT('submissions:user:', user_id) AS name, COUNT(*) AS value
+            FROM submissions
+            GROUP BY user_id
+            """)
+    Counter[] countSubmissionsByUser();
+}
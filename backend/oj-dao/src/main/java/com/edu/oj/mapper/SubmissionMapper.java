@@ -3,9 +3,12 @@ package com.edu.oj.mapper;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
+import java.util.List;
+
 import com.edu.oj.entity.Submission;
 import com.edu.oj.entity.Status;
 
@@ -29,28 +32,120 @@ public interface SubmissionMapper {
             """)
     Submission findSubmissionById(Long submissionId);
 
+    /**
+     * 按页码分页：先在索引上取出本页的 ID（延迟关联），再关联出整行与题目、用户名
+     */
     @Select("""
             <script>
                 SELECT 
                     submissions.*,
                     problems.title AS problem_title,
                     users.username AS user_name
-                FROM submissions
+                FROM (
+                    SELECT id
+                    FROM submissions
+                    <where>
+                        <if test="userId != null">
+                            AND user_id = #{userId}
+                        </if>
+                        <if test="problemId != null">
+                            AND problem_id = #{problemId}
+                        </if>
+                        <if test="verdict != null">
+                            AND verdict = #{verdict}
+                        </if>
+                    </where>
+                    ORDER BY id DESC
+                    LIMIT #{limit} OFFSET #{offset}
+                ) page
+                JOIN submissions ON submissions.id = page.id
                 JOIN problems ON submissions.problem_id = problems.id
                 JOIN users ON submissions.user_id = users.id
+                ORDER BY submissions.id DESC
+            </script>
+            """)
+    Submission[] getSubmissions(Long userId, Long problemId, Integer verdict, int limit, int offset);
+
+    /**
+     * 按 ID 游标分页（keyset），取 ID 小于 beforeId 的一页，耗时与翻到第几页无关
+     */
+    @Select("""
+            <script>
+                SELECT 
+                    page.*,
+                    problems.title AS problem_title,
+                    users.username AS user_name
+                FROM (
+                    SELECT *
+                    FROM submissions
+                    <where>
+                        <if test="userId != null">
+                            AND user_id = #{userId}
+                        </if>
+                        <if test="problemId != null">
+                            AND problem_id = #{problemId}
+                        </if>
+                        <if test="verdict != null">
+                            AND verdict = #{verdict}
+                        </if>
+                        <if test="beforeId != null">
+                            AND id &lt; #{beforeId}
+                        </if>
+                    </where>
+                    ORDER BY id DESC
+                    LIMIT #{limit}
+                ) page
+                JOIN problems ON page.problem_id = problems.id
+                JOIN users ON page.user_id = users.id
+                ORDER BY page.id DESC
+            </script>
+            """)
+    Submission[] getSubmissionsBeforeId(Long userId, Long problemId, Integer verdict, Long beforeId, int limit);
+
+    /**
+     * 按 ID 游标分页（keyset）取出重测目标，只取投递需要的列
+     */
+    @Select("""
+            <script>
+                SELECT id, problem_id, user_id, language, submission_time, status, score
+                FROM submissions
+                WHERE id > #{afterId}
+                <if test="problemId != null">
+                    AND problem_id = #{problemId}
+                </if>
+                <if test="userId != null">
+                    AND user_id = #{userId}
+                </if>
+                <if test="toId != null">
+                    AND id &lt;= #{toId}
+                </if>
+                ORDER BY id ASC
+                LIMIT #{limit}
+            </script>
+            """)
+    Submission[] getSubmissionsAfterId(Long problemId, Long userId, Long toId, long afterId, int limit);
+
+    @Select("""
+            <script>
+                SELECT COUNT(*)
+                FROM submissions
                 <where>
+                    <if test="problemId != null">
+                        AND problem_id = #{problemId}
+                    </if>
                     <if test="userId != null">
-                        AND submissions.user_id = #{userId}
+                        AND user_id = #{userId}
                     </if>
-                    <if test="problemId != null">
-                        AND submissions.problem_id = #{problemId}
+                    <if test="fromId != null">
+                        AND id &gt;= #{fromId}
+                    </if>
+                    <if test="toId != null">
+                        AND id &lt;= #{toId}
                     </if>
                 </where>
-                ORDER BY submissions.id DESC
-                LIMIT #{limit} OFFSET #{offset}
             </script>
             """)
-    Submission[] getSubmissions(Long userId, Long problemId, int limit, int offset);
+    long countSubmissions(Long problemId, Long userId, Long fromId, Long toId);
 
     @Update("""
             UPDATE submissions 
@@ -59,6 +154,80 @@ public interface SubmissionMapper {
             """)
     void updateSubmissionStatusById(Long submissionId, Status status);
 
+    /**
+     * 重新投递评测：状态回到 PENDING，刷新投递时间并使评测序号加一，只对已结束的提交生效
+     * @return 1 表示已更新，0 表示提交不存在或仍在评测中
+     */
+    @Update("""
+            UPDATE submissions
+            SET status = 'PENDING', queued_time = CURRENT_TIMESTAMP, judge_seq = judge_seq + 1
+            WHERE id = #{submissionId} AND status = 'DONE'
+            """)
+    int requeueSubmission(Long submissionId);
+
+    /**
+     * 最近一次投递评测是否已超过指定分钟数，用数据库时钟比较
+     */
+    @Select("""
+            SELECT COALESCE(queued_time, submission_time) < NOW() - INTERVAL #{minutes} MINUTE
+            FROM submissions
+            WHERE id = #{submissionId}
+            """)
+    Boolean isQueuedBefore(Long submissionId, int minutes);
+
+    /**
+     * 一条语句更新多条提交的状态
+     */
+    @Update("""
+            <script>
+                UPDATE submissions
+                SET status = CASE id
+                    <foreach collection="updates" item="u">
+                        WHEN #{u.id} THEN #{u.status}
+                    </foreach>
+                END
+                WHERE id IN
+                <foreach collection="updates" item="u" open="(" separator="," close=")">
+                    #{u.id}
+                </foreach>
+            </script>
+            """)
+    int updateSubmissionStatuses(@Param("updates") List<Submission> updates);
+
+    /**
+     * 一条语句写入多条已结束提交的结果、分数、用时与内存
+     */
+    @Update("""
+            <script>
+                UPDATE submissions
+                SET verdict = CASE id
+                    <foreach collection="results" item="r">
+                        WHEN #{r.id} THEN #{r.verdict}
+                    </foreach>
+                END,
+                score = CASE id
+                    <foreach collection="results" item="r">
+                        WHEN #{r.id} THEN #{r.score}
+                    </foreach>
+                END,
+                time_used = CASE id
+                    <foreach collection="results" item="r">
+                        WHEN #{r.id} THEN #{r.timeUsed}
+                    </foreach>
+                END,
+                memory_used = CASE id
+                    <foreach collection="results" item="r">
+                        WHEN #{r.id} THEN #{r.memoryUsed}
+                    </foreach>
+                END
+                WHERE id IN
+                <foreach collection="results" item="r" open="(" separator="," close=")">
+                    #{r.id}
+                </foreach>
+            </script>
+            """)
+    int updateSubmissionVerdicts(@Param("results") List<Submission> results);
+
     @Update("""
             UPDATE submissions 
             SET score = #{newScore} 
@@ -0,0 +1,41 @@
+package com.edu.oj.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+/**
+ * 评测进度 DAO，供多实例共享的进度存储使用
+ * <p>
+ * updated_at 由数据库写入，过期判断也用数据库时钟，不受各实例时钟偏差影响。
+ */
+@Mapper
+public interface SubmissionProgressMapper {
+    @Select("""
+            SELECT config
+            FROM submission_progress
+            WHERE submission_id = #{submissionId}
+              AND updated_at >= TIMESTAMPADD(MINUTE, -#{ttlMinutes}, CURRENT_TIMESTAMP(3))
+            """)
+    String findProgress(Long submissionId, long ttlMinutes);
+
+    @Insert("""
+            INSERT INTO submission_progress (submission_id, config)
+            VALUES (#{submissionId}, #{config})
+            ON DUPLICATE KEY UPDATE config = VALUES(config), updated_at = CURRENT_TIMESTAMP(3)
+            """)
+    int upsertProgress(Long submissionId, String config);
+
+    @Delete("""
+            DELETE FROM submission_progress
+            WHERE submission_id = #{submissionId}
+            """)
+    int deleteProgress(Long submissionId);
+
+    @Delete("""
+            DELETE FROM submission_progress
+            WHERE updated_at < TIMESTAMPADD(MINUTE, -#{ttlMinutes}, CURRENT_TIMESTAMP(3))
+            """)
+    int deleteExpiredProgress(long ttlMinutes);
+}
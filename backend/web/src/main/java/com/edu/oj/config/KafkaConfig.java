@@ -0,0 +1,46 @@
+package com.edu.oj.config;
+
+import java.util.Arrays;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+import com.edu.oj.message.Priority;
+
+@Configuration
+public class KafkaConfig {
+
+    /**
+     * 评测结果消费失败时整批重试，不设次数上限
+     * <p>
+     * 默认的错误处理在重试用尽后会跳过这批记录并提交位点，评测结果就丢了；这里一直重试，
+     * 只有 S3 与数据库都写入成功、监听器手动确认后位点才会前移。
+     */
+    @Bean
+    public CommonErrorHandler kafkaErrorHandler(@Value("${oj.result-consumer.initial-backoff-ms:1000}") long initialMs,
+                                                @Value("${oj.result-consumer.max-backoff-ms:60000}") long maxMs) {
+        ExponentialBackOff backOff = new ExponentialBackOff(initialMs, 2.0);
+        backOff.setMaxInterval(maxMs);
+        backOff.setMaxElapsedTime(Long.MAX_VALUE);
+        return new DefaultErrorHandler(backOff);
+    }
+
+    /**
+     * 每个评测通道的提交 topic，启动时不存在则创建
+     * <p>
+     * 评测机订阅全部通道，不依赖 broker 开启自动建 topic；分区数与副本数取 broker 默认值。
+     */
+    @Bean
+    public KafkaAdmin.NewTopics judgeLaneTopics(@Value("${spring.kafka.topic.submission}") String submissionTopic) {
+        return new KafkaAdmin.NewTopics(Arrays.stream(Priority.values())
+                .map(p -> TopicBuilder.name(p.topic(submissionTopic)).build())
+                .toArray(NewTopic[]::new));
+    }
+}
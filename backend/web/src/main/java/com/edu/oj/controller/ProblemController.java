@@ -21,6 +21,8 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.edu.oj.entity.Problem;
+import com.edu.oj.entity.ProblemMetadata;
+import com.edu.oj.response.CountResponse;
 import com.edu.oj.service.ProblemService;
 
 import lombok.extern.slf4j.Slf4j;
@@ -39,11 +41,28 @@ public class ProblemController {
         return problemService.getProblems(pageSize, pageNum);
     }
 
+    /**
+     * 题目数，最终一致，见 {@link CountResponse#getMaxStalenessMs()}
+     */
+    @GetMapping("/count")
+    public CountResponse countProblems() {
+        return problemService.countProblems();
+    }
+
     @GetMapping("/{problemId}")
     public Problem getProblem(@PathVariable Long problemId) {
         return problemService.getProblemById(problemId);
     } 
 
+    /**
+     * 题目配置与测试点清单（含测试点文件名、大小与哈希），仅管理员可见
+     */
+    @GetMapping("/{problemId}/metadata")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ProblemMetadata getProblemMetadata(@PathVariable Long problemId) throws IOException {
+        return problemService.getProblemMetadata(problemId);
+    }
+
     @PostMapping("/{problemId}")
     @PreAuthorize("hasRole('ADMIN')")
     public Problem createProblem(
@@ -1,9 +1,13 @@
 package com.edu.oj.controller;
 
+import com.edu.oj.dto.RejudgeDto;
 import com.edu.oj.dto.SubmissionDto;
-import com.edu.oj.entity.SubmissionConfig;
+import com.edu.oj.entity.RejudgeTask;
 import com.edu.oj.entity.User;
+import com.edu.oj.manager.SubmissionResultCache;
+import com.edu.oj.response.CountResponse;
 import com.edu.oj.service.JudgeService;
+import com.edu.oj.service.RejudgeService;
 import com.edu.oj.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -13,9 +17,15 @@ import com.edu.oj.entity.Role;
 import com.edu.oj.entity.Submission;
 import com.edu.oj.exceptions.BusinessException;
 import com.edu.oj.exceptions.CommonErrorCode;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.util.List;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
@@ -29,13 +39,27 @@ public class SubmissionController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private RejudgeService rejudgeService;
+
     @GetMapping("/")
     public Submission[] getSubmissions(@RequestParam(required = false) Long userId,
                                        @RequestParam(required = false) Long problemId,
+                                       @RequestParam(required = false) Integer verdict,
+                                       @RequestParam(required = false) Long beforeId,
                                        @RequestParam(defaultValue = "1") int page,
                                        @RequestParam(defaultValue = "20") int size) {
-        return judgeService.getSubmissions(userId, problemId, page, size);
+        return judgeService.getSubmissions(userId, problemId, verdict, beforeId, page, size);
     }
+    /**
+     * 提交数，用于分页；计数是最终一致的，落后时间上限见返回的 maxStalenessMs
+     */
+    @GetMapping("/count")
+    public CountResponse countSubmissions(@RequestParam(required = false) Long userId,
+                                          @RequestParam(required = false) Long problemId) {
+        return judgeService.countSubmissions(userId, problemId);
+    }
+
     @PostMapping
     @PreAuthorize("isAuthenticated()")
     public Long submitCode(@RequestBody SubmissionDto submissionDto) throws IOException {
@@ -47,9 +71,38 @@ public class SubmissionController {
         return judgeService.handleSubmission(user.getId(), submissionDto);
     }
 
+    /**
+     * 评测结果。已结束的结果带 ETag，重测会改变结果，所以不标记 immutable，浏览器每次用 If-None-Match 校验
+     */
     @GetMapping("/{submissionId}/result")
-    public SubmissionConfig getSubmissionResult(@PathVariable Long submissionId) throws IOException {
-        return judgeService.getSubmissionResult(submissionId);
+    public ResponseEntity<byte[]> getSubmissionResult(@PathVariable Long submissionId,
+                                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
+        SubmissionResultCache.CachedResult result = judgeService.getSubmissionResultJson(submissionId);
+        if (result.etag() == null) {
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(result.json());
+        }
+        if (result.etag().equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(result.etag())
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(result.etag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(result.json());
+    }
+
+    /**
+     * 评测进度推送（text/event-stream），事件 progress 为当前进度，事件 result 为最终结果
+     */
+    @GetMapping(value = "/{submissionId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeSubmission(@PathVariable Long submissionId) throws IOException {
+        return judgeService.subscribeSubmission(submissionId);
     }
 
     @GetMapping("/{submissionId}/code")
@@ -74,5 +127,29 @@ public class SubmissionController {
         return ResponseEntity.ok(code);
     }
 
+    @PostMapping("/rejudge")
+    @PreAuthorize("hasRole('ADMIN')")
+    public RejudgeTask rejudge(@RequestBody RejudgeDto rejudgeDto) {
+        return rejudgeService.startRejudge(rejudgeDto);
+    }
+
+    @GetMapping("/rejudge")
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<RejudgeTask> getRejudgeTasks() {
+        return rejudgeService.getTasks();
+    }
+
+    @GetMapping("/rejudge/{taskId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public RejudgeTask getRejudgeTask(@PathVariable Long taskId) {
+        return rejudgeService.getTask(taskId);
+    }
+
+    @DeleteMapping("/rejudge/{taskId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public RejudgeTask cancelRejudge(@PathVariable Long taskId) {
+        return rejudgeService.cancel(taskId);
+    }
+
     
 }
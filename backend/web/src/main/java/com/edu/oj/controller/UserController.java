@@ -6,6 +6,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 
 import com.edu.oj.entity.User;
+import com.edu.oj.response.CountResponse;
 import com.edu.oj.service.UserService;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,6 +32,14 @@ public class UserController {
         return userService.findAllUsers();
     }
 
+    /**
+     * 用户数，最终一致，见 {@link CountResponse#getMaxStalenessMs()}
+     */
+    @GetMapping("/count")
+    public CountResponse countUsers() {
+        return userService.countUsers();
+    }
+
     @GetMapping("/me")
     @PreAuthorize("isAuthenticated()")
     public User getCurrentUser() {
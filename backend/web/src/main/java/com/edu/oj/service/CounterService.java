@@ -0,0 +1,176 @@
+package com.edu.oj.service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.edu.oj.entity.Counter;
+import com.edu.oj.mapper.CounterMapper;
+import com.edu.oj.response.CountResponse;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 维护的计数，代替 COUNT(*) 整表扫描
+ * <p>
+ * 增量先在内存中合并，事务提交后才计入，每 {@code oj.counters.flush-ms} 用一条语句批量累加到 counters 表，
+ * 热点计数不会在每次提交时争用同一行锁。读取经过 {@code oj.counters.cache-ms} 的缓存。
+ * <p>
+ * 正常运行时新提交在 flush-ms + cache-ms 内可见，但这不是误差上限：实例异常退出会丢失未刷新的增量，
+ * 校准期间写入的提交可能被统计一次、其增量又被累加一次。这些误差只由
+ * 每 {@code oj.counters.reconcile-hours} 一次的 GROUP BY 重新统计修正（计数表为空时启动即校准），
+ * 所以计数的误差最长持续一个校准间隔，查询结果的 maxStalenessMs 报告的是这个值。
+ */
+@Service
+@Slf4j
+public class CounterService {
+
+    public static final String SUBMISSIONS = "submissions";
+    public static final String PROBLEMS = "problems";
+    public static final String USERS = "users";
+
+    private static final int RECONCILE_CHUNK = 1000;
+    private static final int MAX_CACHED = 10000;
+
+    @Autowired
+    private CounterMapper counterMapper;
+
+    @Value("${oj.counters.flush-ms:1000}")
+    private long flushMs;
+
+    @Value("${oj.counters.cache-ms:5000}")
+    private long cacheMs;
+
+    @Value("${oj.counters.reconcile-hours:24}")
+    private long reconcileHours;
+
+    private final ConcurrentMap<String, Long> pending = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Cached> cache = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "counter-flusher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public static String submissionsOfProblem(Long problemId) {
+        return "submissions:problem:" + problemId;
+    }
+
+    public static String submissionsOfUser(Long userId) {
+        return "submissions:user:" + userId;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::flush, flushMs, flushMs, TimeUnit.MILLISECONDS);
+        scheduler.execute(() -> {
+            try {
+                if (counterMapper.getCounter(SUBMISSIONS) == null) reconcile();
+            } catch (Exception e) {
+                log.warn("Failed to initialize counters", e);
+            }
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile();
+            } catch (Exception e) {
+                log.warn("Failed to reconcile counters", e);
+            }
+        }, reconcileHours, reconcileHours, TimeUnit.HOURS);
+    }
+
+    /**
+     * 累加计数；在事务中调用时于提交后生效，回滚则不计
+     */
+    public void add(long delta, String... names) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    merge(delta, names);
+                }
+            });
+        } else {
+            merge(delta, names);
+        }
+    }
+
+    private void merge(long delta, String... names) {
+        for (String name : names) pending.merge(name, delta, Long::sum);
+    }
+
+    public CountResponse get(String name) {
+        long now = System.currentTimeMillis();
+        Cached cached = cache.get(name);
+        if (cached != null && now - cached.loadedAt() < cacheMs) {
+            return cached.response();
+        }
+        Long value = counterMapper.getCounter(name);
+        CountResponse r = new CountResponse(value == null ? 0 : value, LocalDateTime.now(),
+                TimeUnit.HOURS.toMillis(reconcileHours));
+        if (cache.size() >= MAX_CACHED) cache.clear();
+        cache.put(name, new Cached(r, now));
+        return r;
+    }
+
+    // 把内存中的增量写入计数表，失败时放回下次再试
+    private void flush() {
+        if (pending.isEmpty()) return;
+        Map<String, Long> deltas = new HashMap<>();
+        for (String name : pending.keySet()) {
+            Long delta = pending.remove(name);
+            if (delta != null && delta != 0) deltas.put(name, delta);
+        }
+        if (deltas.isEmpty()) return;
+        try {
+            counterMapper.addCounters(deltas);
+        } catch (Exception e) {
+            log.warn("Failed to flush {} counters, retrying later", deltas.size(), e);
+            deltas.forEach((name, delta) -> pending.merge(name, delta, Long::sum));
+        }
+    }
+
+    /**
+     * 重新统计所有计数。统计期间写入的提交可能被多计或少计，下次校准时修正
+     */
+    public void reconcile() {
+        flush();
+        long start = System.currentTimeMillis();
+        int n = 0;
+        for (Counter[] counters : new Counter[][]{
+                counterMapper.countTotals(),
+                counterMapper.countSubmissionsByProblem(),
+                counterMapper.countSubmissionsByUser()}) {
+            for (int i = 0; i < counters.length; i += RECONCILE_CHUNK) {
+                counterMapper.setCounters(Arrays.copyOfRange(counters, i, Math.min(counters.length, i + RECONCILE_CHUNK)));
+            }
+            n += counters.length;
+        }
+        cache.clear();
+        log.info("Reconciled {} counters in {} ms", n, System.currentTimeMillis() - start);
+    }
+
+    private record Cached(CountResponse response, long loadedAt) {
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        flush();
+    }
+}
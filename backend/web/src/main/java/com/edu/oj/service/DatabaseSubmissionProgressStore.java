@@ -0,0 +1,98 @@
+package com.edu.oj.service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.edu.oj.entity.SubmissionConfig;
+import com.edu.oj.exceptions.BusinessException;
+import com.edu.oj.exceptions.CommonErrorCode;
+import com.edu.oj.mapper.SubmissionProgressMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 共享进度存储，进度以 JSON 存在 submission_progress 表中
+ * <p>
+ * 多个后端实例查询同一份进度。同一提交的结果消息按提交 ID 分区，只会被一个实例消费，
+ * 读-改-写不会互相覆盖。超过 TTL 未更新的行读取时忽略，并定期清理；过期按数据库时钟判断。
+ */
+@Component
+@ConditionalOnProperty(name = "oj.progress-store.type", havingValue = "database")
+@Slf4j
+public class DatabaseSubmissionProgressStore implements SubmissionProgressStore {
+
+    @Autowired
+    private SubmissionProgressMapper progressMapper;
+
+    @Autowired
+    @Qualifier("jsonMapper")
+    private ObjectMapper jsonMapper;
+
+    @Value("${oj.progress-store.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "progress-cleaner");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    public void startCleaner() {
+        cleaner.scheduleWithFixedDelay(() -> {
+            try {
+                removeExpired();
+            } catch (Exception e) {
+                log.warn("Failed to remove expired submission progress", e);
+            }
+        }, 1, 1, TimeUnit.MINUTES);
+    }
+
+    int removeExpired() {
+        int n = progressMapper.deleteExpiredProgress(ttlMinutes);
+        if (n > 0) log.info("Removed {} expired submission progress rows", n);
+        return n;
+    }
+
+    @Override
+    public SubmissionConfig get(Long submissionId) {
+        String json = progressMapper.findProgress(submissionId, ttlMinutes);
+        if (json == null) return null;
+        try {
+            return jsonMapper.readValue(json, SubmissionConfig.class);
+        } catch (JsonProcessingException e) {
+            log.error("Corrupted progress of submission {}", submissionId, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(Long submissionId, SubmissionConfig config) {
+        try {
+            progressMapper.upsertProgress(submissionId, jsonMapper.writeValueAsString(config));
+        } catch (JsonProcessingException e) {
+            throw new BusinessException(CommonErrorCode.UNKNOWN_ERROR, "Failed to serialize submission progress");
+        }
+    }
+
+    @Override
+    public void remove(Long submissionId) {
+        progressMapper.deleteProgress(submissionId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleaner.shutdownNow();
+    }
+}
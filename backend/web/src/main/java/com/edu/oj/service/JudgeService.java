@@ -5,8 +5,10 @@ import java.io.IOException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.beans.factory.annotation.Value;
 
 import java.time.LocalDateTime;
@@ -14,15 +16,26 @@ import com.edu.oj.dto.SubmissionDto;
 import com.edu.oj.entity.Status;
 import com.edu.oj.entity.Submission;
 import com.edu.oj.manager.FileSystemManager;
+import com.edu.oj.manager.SubmissionResultCache;
 import com.edu.oj.mapper.SubmissionMapper;
+import com.edu.oj.message.Priority;
 import com.edu.oj.message.SubmissionMessage;
 import com.edu.oj.message.ResultMessage;
+import com.edu.oj.response.CountResponse;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import com.edu.oj.entity.SubmissionConfig;
 import com.edu.oj.entity.TestResult;
 import com.edu.oj.exceptions.BusinessException;
@@ -31,6 +44,15 @@ import com.edu.oj.exceptions.CommonErrorCode;
 @Service
 @Slf4j
 public class JudgeService {
+    private static final int MAX_PAGE_SIZE = 100;
+    // 投递后超过该时间仍无评测进度的提交按系统错误结束
+    private static final int JUDGE_TIMEOUT_MINUTES = 5;
+
+    // 评测状态码，与评测机 JudgeExecutor.ST_* 一致
+    private static final int ST_ACCEPTED = 0;
+    private static final int ST_WAITING = 7;
+    private static final int ST_SYSTEM_ERROR = -2;
+
     @Value("${spring.kafka.topic.submission}")
     private String judgeTopic;
 
@@ -43,11 +65,53 @@ public class JudgeService {
     @Autowired
     KafkaTemplate<String, SubmissionMessage> kafkaTemplate;
 
-    ConcurrentMap<Long, SubmissionConfig> submissionCache = new ConcurrentHashMap<>();
+    @Autowired
+    SubmissionProgressStore progressStore;
+
+    @Autowired
+    SubmissionEventHub eventHub;
+
+    @Autowired
+    SubmissionResultCache resultCache;
+
+    @Autowired
+    CounterService counterService;
+
+    @Autowired
+    ObjectMapper objectMapper;
 
-    public Submission[] getSubmissions(Long userId, Long problemId, int page, int size) {
+    // 评测结果写 S3 的线程池
+    private final ExecutorService resultWriter = Executors.newFixedThreadPool(8, r -> {
+        Thread t = new Thread(r, "result-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 提交数，可按题目或用户过滤（不能同时）
+     */
+    public CountResponse countSubmissions(Long userId, Long problemId) {
+        if (userId != null && problemId != null) {
+            throw new BusinessException(CommonErrorCode.PARAM_ERROR, "Only one of userId and problemId is supported");
+        }
+        if (userId != null) return counterService.get(CounterService.submissionsOfUser(userId));
+        if (problemId != null) return counterService.get(CounterService.submissionsOfProblem(problemId));
+        return counterService.get(CounterService.SUBMISSIONS);
+    }
+
+    /**
+     * 提交列表，按 ID 倒序
+     * @param beforeId 游标：不为 null 时返回 ID 小于它的一页（忽略 page），下一页的游标为本页最后一条的 ID
+     */
+    public Submission[] getSubmissions(Long userId, Long problemId, Integer verdict, Long beforeId, int page, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE || page < 1) {
+            throw new BusinessException(CommonErrorCode.PARAM_ERROR, "page must be >= 1 and size between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (beforeId != null) {
+            return submissionMapper.getSubmissionsBeforeId(userId, problemId, verdict, beforeId, size);
+        }
         int offset = (page - 1) * size;
-        return submissionMapper.getSubmissions(userId, problemId, size, offset);
+        return submissionMapper.getSubmissions(userId, problemId, verdict, size, offset);
     }
 
     @Transactional
@@ -61,137 +125,286 @@ public class JudgeService {
             submissionRequest.getProblemId(),
             null,
             submissionRequest.getLanguage(),
-            (short)0
+            (short)0,
+            null,
+            null,
+            null,
+            null,
+            null
         );
         submissionMapper.insertSubmission(sub);
+        counterService.add(1, CounterService.SUBMISSIONS,
+                CounterService.submissionsOfProblem(sub.getProblemId()), CounterService.submissionsOfUser(userId));
         fileManager.saveSubmissionCode(sub.getId(), submissionRequest.getCode(), submissionRequest.getLanguage());
 
+        initProgress(sub.getId());
+        sendSubmission(sub, Priority.NORMAL);
+        return sub.getId();
+    }
+
+    /**
+     * 重测一条已有提交：状态回到 PENDING，走 REJUDGE 通道，旧结果在新结果写入时被覆盖
+     * @return false 表示提交仍在评测中（PENDING/JUDGING），未重测
+     */
+    public boolean rejudgeSubmission(Submission sub) {
+        if (submissionMapper.requeueSubmission(sub.getId()) == 0) {
+            return false;
+        }
+        initProgress(sub.getId());
+        sendSubmission(sub, Priority.REJUDGE);
+        return true;
+    }
+
+    private void initProgress(Long submissionId) {
+        SubmissionConfig config = newProgress();
+        config.setStatus(ST_WAITING);
+        progressStore.put(submissionId, config);
+    }
+
+    private static SubmissionConfig newProgress() {
         SubmissionConfig config = new SubmissionConfig();
-        config.setStatus(7);
         config.setTestResult(new ArrayList<>());
         config.setTimeUsed(0);
         config.setMemoryUsed(0);
-        submissionCache.put(sub.getId(), config);
-
-        sendSubmission(sub);
-        return sub.getId();
+        return config;
     }
     
+    /**
+     * 按优先级投递到对应评测通道，每个通道一个 topic（见 {@link Priority#topic}）
+     */
     @SuppressWarnings("null")
-    public void sendSubmission(Submission submission) {
-        log.info("Sending submission to judge queue:" + submission.getId());
-        kafkaTemplate.send(judgeTopic, new SubmissionMessage(submission.getId(), submission.getProblemId(), submission.getLanguage()));
+    public void sendSubmission(Submission submission, Priority priority) {
+        String topic = priority.topic(judgeTopic);
+        log.info("Sending submission {} to judge lane {}", submission.getId(), topic);
+        kafkaTemplate.send(topic, String.valueOf(submission.getId()),
+                new SubmissionMessage(submission.getId(), submission.getProblemId(), submission.getLanguage(), priority));
     }
 
-    @Transactional
-    @KafkaListener(topics = "${spring.kafka.topic.result}", groupId = "judge-service-group")
-    public void receiveJudgeResult(ResultMessage message) {
-        log.info("Received judge result for submission: {} for case {}", message.getSubmissionId(), message.getTestCaseId());
-        
-        if (Boolean.FALSE.equals(message.getCorrect())) {
-             log.error("System error for submission: {}", message.getSubmissionId());
-             SubmissionConfig errorConfig = new SubmissionConfig();
-             errorConfig.setStatus(-2); // SYSTEM_ERROR
-             errorConfig.setTestResult(new ArrayList<>());
-             try {
-                fileManager.saveSubmissionConfig(message.getSubmissionId(), errorConfig);
-                submissionMapper.updateSubmissionStatusById(message.getSubmissionId(), Status.DONE);
-                submissionCache.remove(message.getSubmissionId());
-             } catch (IOException e) {
-                 log.error("Failed to save error config", e);
-             }
-             return;
-        }
-
-        SubmissionConfig config = submissionCache.computeIfAbsent(message.getSubmissionId(), k -> {
-            SubmissionConfig c = new SubmissionConfig();
-            c.setTestResult(new ArrayList<>());
-            c.setTimeUsed(0);
-            c.setMemoryUsed(0);
-            return c;
-        });
+    /**
+     * 批量消费评测结果
+     * <p>
+     * 一批记录按提交分组，每个提交读取一次评测进度、合并本批记录后写回一次。评测结束的提交先并行写入 S3（不在数据库事务内），
+     * 再用一条多行 UPDATE 更新本批所有提交的状态，两者都成功后才提交位点。
+     * 失败时抛出异常，由 {@link com.edu.oj.config.KafkaConfig} 的错误处理整批重试；测试点按编号去重，重复消费是安全的。
+     * 结束后的记录继续处理：重复投递的测试点去重后合并，重测的开始记录另起一份进度。
+     */
+    @KafkaListener(topics = "${spring.kafka.topic.result}", groupId = "judge-service-group", batch = "true")
+    public void receiveJudgeResults(List<ResultMessage> messages, Acknowledgment ack) {
+        log.info("Received {} judge results", messages.size());
 
-        synchronized (config) {
+        Map<Long, List<ResultMessage>> bySubmission = new LinkedHashMap<>();
+        for (ResultMessage m : messages) {
+            bySubmission.computeIfAbsent(m.getSubmissionId(), k -> new ArrayList<>()).add(m);
+        }
 
-            if (message.getCorrect() != true) {
-                log.error("System error for submission: {}", message.getSubmissionId());
-                SubmissionConfig errorConfig = new SubmissionConfig();
-                errorConfig.setStatus(-2); // SYSTEM_ERROR
-                errorConfig.setTestResult(new ArrayList<>());
-                try {
-                   fileManager.saveSubmissionConfig(message.getSubmissionId(), errorConfig);
-                   submissionMapper.updateSubmissionStatusById(message.getSubmissionId(), Status.DONE);
-                   submissionCache.remove(message.getSubmissionId());
-                } catch (IOException e) {
-                    log.error("Failed to save error config", e);    
+        Map<Long, Status> statusUpdates = new LinkedHashMap<>();
+        Map<Long, SubmissionConfig> finished = new LinkedHashMap<>();
+        Map<Long, SubmissionConfig> progress = new LinkedHashMap<>();
+        for (Map.Entry<Long, List<ResultMessage>> e : bySubmission.entrySet()) {
+            Long submissionId = e.getKey();
+            SubmissionConfig config = progressStore.get(submissionId);
+            if (config == null) config = newProgress();
+            for (ResultMessage m : e.getValue()) {
+                if (finished.containsKey(submissionId) && m.getTestCaseId() == 0) {
+                    // 同一批里结束后又开始的是重测，上一次的结果被它取代
+                    finished.remove(submissionId);
+                    config = newProgress();
+                }
+                if (!Boolean.TRUE.equals(m.getCorrect())) {
+                    log.error("System error for submission: {}", submissionId);
+                    config = new SubmissionConfig();
+                    config.setStatus(ST_SYSTEM_ERROR);
+                    config.setTestResult(new ArrayList<>());
+                    finished.put(submissionId, config);
+                } else {
+                    if (m.getTestCaseId() == 0) {
+                        statusUpdates.put(submissionId, Status.JUDGING);
+                    }
+                    if (applyResult(config, m)) finished.put(submissionId, config);
+                }
+                if (finished.containsKey(submissionId)) {
+                    statusUpdates.put(submissionId, Status.DONE);
                 }
-                return;
             }
+            if (!finished.containsKey(submissionId)) {
+                progressStore.put(submissionId, config);
+                progress.put(submissionId, config);
+            }
+        }
+
+        // S3 写入并行进行，全部成功后再更新数据库
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        finished.forEach((submissionId, config) -> writes.add(CompletableFuture.runAsync(() -> {
+            try {
+                fileManager.saveSubmissionConfig(submissionId, config);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, resultWriter)));
+        try {
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            throw new BusinessException(CommonErrorCode.FILE_OPERATION_ERROR,
+                    "Failed to save submission results: " + e.getCause().getMessage());
+        }
+
+        // 先写结果摘要再改状态，DONE 的提交一定有 verdict
+        if (!finished.isEmpty()) {
+            List<Submission> results = new ArrayList<>();
+            finished.forEach((id, config) -> results.add(verdictOf(id, config)));
+            submissionMapper.updateSubmissionVerdicts(results);
+        }
+        if (!statusUpdates.isEmpty()) {
+            List<Submission> updates = new ArrayList<>();
+            statusUpdates.forEach((id, status) -> {
+                Submission sub = new Submission();
+                sub.setId(id);
+                sub.setStatus(status);
+                updates.add(sub);
+            });
+            submissionMapper.updateSubmissionStatuses(updates);
+        }
 
-            config.setStatus(message.getStatus().intValue());
+        finished.keySet().forEach(progressStore::remove);
+        ack.acknowledge();
 
+        progress.forEach((id, config) -> eventHub.publish(id, config, false));
+        finished.forEach((id, config) -> eventHub.publish(id, config, true));
+    }
+
+    // 写入 submissions 表的结果摘要
+    private static Submission verdictOf(Long submissionId, SubmissionConfig config) {
+        Submission sub = new Submission();
+        sub.setId(submissionId);
+        sub.setVerdict(config.getStatus());
+        sub.setScore(config.getScore() == null ? 0 : config.getScore().shortValue());
+        sub.setTimeUsed(config.getTimeUsed());
+        sub.setMemoryUsed(config.getMemoryUsed());
+        return sub;
+    }
+
+    /**
+     * 把一条评测结果合并进评测进度
+     * @return 评测是否结束
+     */
+    private boolean applyResult(SubmissionConfig config, ResultMessage message) {
+        // 本地存储时查询接口读的是同一个对象
+        synchronized (config) {
             if (message.getTestCaseId() == 0) {
+                config.setStatus(message.getStatus().intValue());
                 config.setCompileMessage(message.getMessage());
-                submissionMapper.updateSubmissionStatusById(message.getSubmissionId(), Status.JUDGING); 
+                if (message.getCompileTimeUsed() != null) config.setCompileTime(message.getCompileTimeUsed().intValue());
+                if (message.getCheckerCompileTimeUsed() != null) config.setCheckerCompileTime(message.getCheckerCompileTimeUsed().intValue());
             } else {
                 TestResult testResult = new TestResult();
                 testResult.setCaseId(message.getTestCaseId().intValue());
                 testResult.setStatus(message.getStatus().intValue());
                 testResult.setTime(message.getTimeUsed().intValue());
                 testResult.setMemory(message.getMemoryUsed().intValue());
+                if (message.getCheckerTimeUsed() != null) testResult.setCheckerTime(message.getCheckerTimeUsed().intValue());
                 testResult.setInput(message.getInput());
                 testResult.setUserOutput(message.getUserOutput());
                 testResult.setExpectedOutput(message.getExpectedOutput());
                 testResult.setMessage(message.getMessage());
+                // 重投时同一测试点会再来一次
+                config.getTestResult().removeIf(t -> t.getCaseId().equals(testResult.getCaseId()));
                 config.getTestResult().add(testResult);
 
                 config.setTimeUsed(Math.max(config.getTimeUsed(), message.getTimeUsed().intValue()));
                 config.setMemoryUsed(Math.max(config.getMemoryUsed(), message.getMemoryUsed().intValue()));
-                config.setStatus(message.getStatus().intValue());
+                // 评测机可能在失败后继续评测剩余测试点，总结果取第一个未通过的测试点
+                Integer current = config.getStatus();
+                if (current == null || current == ST_ACCEPTED || current == ST_WAITING) {
+                    config.setStatus(message.getStatus().intValue());
+                }
             }
 
             if (Boolean.TRUE.equals(message.getIsOver())) {
-                try {
-                    int score = message.getScore() != null ? message.getScore().intValue() : 0;
-                    config.setScore(score);
-                    fileManager.saveSubmissionConfig(message.getSubmissionId(), config);
-                    submissionMapper.updateSubmissionStatusById(message.getSubmissionId(), Status.DONE);
-                    submissionCache.remove(message.getSubmissionId());
-                } catch (IOException e) {
-                    throw new BusinessException(CommonErrorCode.FILE_OPERATION_ERROR, "Failed to save submission config for submissionId: " + message.getSubmissionId());
-                }
+                int score = message.getScore() != null ? message.getScore().intValue() : 0;
+                config.setScore(score);
+                return true;
             }
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        resultWriter.shutdown();
+    }
+
+    /**
+     * 评测结果 JSON，查询接口直接返回
+     * @return 已结束时为带 ETag 的缓存结果；评测中为当前进度，etag 为 null
+     */
+    public SubmissionResultCache.CachedResult getSubmissionResultJson(Long submissionId) throws IOException {
+        Submission submission = findSubmission(submissionId);
+        SubmissionEventHub.Snapshot snapshot = loadResult(submission);
+        if (snapshot.finished()) {
+            return finishedResult(submission);
+        }
+        SubmissionConfig config = snapshot.config();
+        synchronized (config) {
+            return new SubmissionResultCache.CachedResult(objectMapper.writeValueAsBytes(config), null, -1);
         }
     }
 
-    public SubmissionConfig getSubmissionResult(Long submissionId) throws IOException {
+    /**
+     * 订阅评测进度推送
+     */
+    public SseEmitter subscribeSubmission(Long submissionId) throws IOException {
+        return eventHub.subscribe(submissionId, () -> loadResult(findSubmission(submissionId)));
+    }
+
+    private Submission findSubmission(Long submissionId) {
         Submission submission = submissionMapper.findSubmissionById(submissionId);
         if (submission == null) {
             throw new BusinessException(CommonErrorCode.RESOURCE_NOT_FOUND, "Submission not found");
         }
+        return submission;
+    }
+
+    // 已结束提交的结果，优先读缓存；缓存按提交行里的评测序号校验
+    private SubmissionResultCache.CachedResult finishedResult(Submission submission) throws IOException {
+        int judgeSeq = judgeSeqOf(submission);
+        SubmissionResultCache.CachedResult cached = resultCache.get(submission.getId(), judgeSeq);
+        if (cached != null) {
+            return cached;
+        }
+        return resultCache.put(submission.getId(), judgeSeq, fileManager.getSubmissionConfigJson(submission.getId()));
+    }
+
+    private static int judgeSeqOf(Submission submission) {
+        return submission.getJudgeSeq() == null ? 0 : submission.getJudgeSeq();
+    }
 
+    private SubmissionEventHub.Snapshot loadResult(Submission submission) throws IOException {
+        Long submissionId = submission.getId();
         if (submission.getStatus() == Status.PENDING || submission.getStatus() == Status.JUDGING) {
-            SubmissionConfig config = submissionCache.get(submissionId);
+            SubmissionConfig config = progressStore.get(submissionId);
             if (config != null) {
-                return config;
+                return new SubmissionEventHub.Snapshot(config, false);
             }
             
-            // 5 分钟后自动寄寄
-            if (submission.getSubmissionTime().plusMinutes(5).isBefore(LocalDateTime.now())) {
+            // 最近一次投递 5 分钟后仍无进度，视为评测丢失
+            if (Boolean.TRUE.equals(submissionMapper.isQueuedBefore(submissionId, JUDGE_TIMEOUT_MINUTES))) {
                 log.warn("Submission {} timed out", submissionId);
                 SubmissionConfig errorConfig = new SubmissionConfig();
-                errorConfig.setStatus(-2); // SYSTEM_ERROR
+                errorConfig.setStatus(ST_SYSTEM_ERROR);
                 errorConfig.setTestResult(new ArrayList<>());
                 
-                fileManager.saveSubmissionConfig(submissionId, errorConfig);
+                resultCache.put(submissionId, judgeSeqOf(submission), fileManager.saveSubmissionConfig(submissionId, errorConfig));
+                submissionMapper.updateSubmissionVerdicts(List.of(verdictOf(submissionId, errorConfig)));
                 submissionMapper.updateSubmissionStatusById(submissionId, Status.DONE);
+                eventHub.publish(submissionId, errorConfig, true);
                 
-                return errorConfig;
+                return new SubmissionEventHub.Snapshot(errorConfig, true);
             }
             
-            return new SubmissionConfig();
+            return new SubmissionEventHub.Snapshot(new SubmissionConfig(), false);
         } else {
-            return fileManager.getSubmissionConfig(submissionId);
+            SubmissionConfig config = objectMapper.readValue(finishedResult(submission).json(), SubmissionConfig.class);
+            return new SubmissionEventHub.Snapshot(config, true);
         }
     }
 
@@ -0,0 +1,70 @@
+package com.edu.oj.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.edu.oj.entity.SubmissionConfig;
+
+/**
+ * 单实例内存进度存储
+ * <p>
+ * 条目数量有上限，超出时淘汰最久未写入的；超过 TTL 未更新的条目视为丢失了结束消息，读取时忽略并清除。
+ */
+@Component
+@ConditionalOnProperty(name = "oj.progress-store.type", havingValue = "local", matchIfMissing = true)
+public class LocalSubmissionProgressStore implements SubmissionProgressStore {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    // 按写入顺序排列，队首最旧
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>();
+
+    public LocalSubmissionProgressStore(@Value("${oj.progress-store.max-entries:10000}") int maxEntries,
+                                        @Value("${oj.progress-store.ttl-minutes:30}") long ttlMinutes) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMinutes * 60_000L;
+    }
+
+    @Override
+    public synchronized SubmissionConfig get(Long submissionId) {
+        Entry e = entries.get(submissionId);
+        if (e == null) return null;
+        if (expired(e, System.currentTimeMillis())) {
+            entries.remove(submissionId);
+            return null;
+        }
+        return e.config;
+    }
+
+    @Override
+    public synchronized void put(Long submissionId, SubmissionConfig config) {
+        long now = System.currentTimeMillis();
+        entries.remove(submissionId);
+        entries.put(submissionId, new Entry(config, now));
+
+        Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry oldest = it.next().getValue();
+            if (entries.size() <= maxEntries && !expired(oldest, now)) break;
+            it.remove();
+        }
+    }
+
+    @Override
+    public synchronized void remove(Long submissionId) {
+        entries.remove(submissionId);
+    }
+
+    private boolean expired(Entry e, long now) {
+        return now - e.writtenAt > ttlMillis;
+    }
+
+    private record Entry(SubmissionConfig config, long writtenAt) {
+    }
+}
@@ -2,16 +2,26 @@ package com.edu.oj.service;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.edu.oj.entity.Problem;
+import com.edu.oj.entity.ProblemConfig;
+import com.edu.oj.entity.ProblemMetadata;
 import com.edu.oj.exceptions.BusinessException;
 import com.edu.oj.exceptions.CommonErrorCode;
 import com.edu.oj.manager.FileSystemManager;
+import com.edu.oj.manager.ProblemMetadataCache;
 import com.edu.oj.mapper.ProblemMapper;
+import com.edu.oj.message.ProblemUpdatedMessage;
+import com.edu.oj.response.CountResponse;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -19,12 +29,26 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class ProblemService {
 
+    private static final Set<String> COMPARE_MODES = Set.of("exact", "line", "token", "float");
+
     @Autowired
     private ProblemMapper problemMapper;
 
     @Autowired
     private FileSystemManager fileSystemManager;
 
+    @Autowired
+    private ProblemMetadataCache problemMetadataCache;
+
+    @Autowired
+    private CounterService counterService;
+
+    @Autowired
+    private KafkaTemplate<String, ProblemUpdatedMessage> kafkaTemplate;
+
+    @Value("${spring.kafka.topic.problem-updated}")
+    private String problemUpdatedTopic;
+
     public Problem getProblemById(Long problemId) {
         Problem problem = problemMapper.findProblemById(problemId);
         if (problem == null) {
@@ -33,6 +57,10 @@ public class ProblemService {
         return problem;
     }
 
+    public CountResponse countProblems() {
+        return counterService.get(CounterService.PROBLEMS);
+    }
+
     public Problem[] getProblems(Long pageSize, Long pageNum) {
         return problemMapper.getProblems(pageSize, pageNum);
     }
@@ -43,11 +71,19 @@ public class ProblemService {
         return fileSystemManager.getProblemFileStream(problemId, fileName);
     }
 
+    public ProblemMetadata getProblemMetadata(Long problemId) throws IOException {
+        // Ensure problem exists
+        getProblemById(problemId);
+        return problemMetadataCache.get(problemId);
+    }
+
     @Transactional
     public void uploadProblemData(Long problemId, InputStream dataStream) throws IOException {
         // Ensure problem exists
         getProblemById(problemId);
-        fileSystemManager.saveAndUnzipProblemData(problemId, dataStream);
+        String version = fileSystemManager.saveAndUnzipProblemData(problemId, dataStream);
+        problemMetadataCache.invalidate(problemId);
+        publishProblemUpdated(problemId, version);
     }
 
     @Transactional
@@ -56,19 +92,21 @@ public class ProblemService {
         problem.setId(problemId);
         problem.setTitle(title);
         problemMapper.insertProblem(problem);
+        counterService.add(1, CounterService.PROBLEMS);
         
         try {
-            fileSystemManager.saveAndUnzipProblemData(problem.getId(), zipFile);
+            String version = fileSystemManager.saveAndUnzipProblemData(problem.getId(), zipFile);
 
-            //检验数据完整性
+            //检验数据完整性，顺便预热元数据缓存
             try {
-                fileSystemManager.getProblemConfig(problem.getId());
+                checkCompareMode(problemMetadataCache.get(problem.getId()).getConfig());
             } catch (BusinessException e) {
                 if (e.getErrorCode() == CommonErrorCode.RESOURCE_NOT_FOUND) {
                     throw new BusinessException(CommonErrorCode.BAD_REQUEST, "config.yml not found in the uploaded zip");
                 }
                 throw e;
             }
+            publishProblemUpdated(problem.getId(), version);
         } catch (Exception e) {
             log.error("Failed to init problem file system", e);
             throw new BusinessException(CommonErrorCode.FILE_OPERATION_ERROR, "Failed to init problem file system: " + e.getMessage());
@@ -77,12 +115,45 @@ public class ProblemService {
         return problem;
     }
 
+    /**
+     * 通知评测机预取新的题目数据；在事务中调用时于提交后发送，回滚则不发送
+     */
+    private void publishProblemUpdated(Long problemId, String version) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    sendProblemUpdated(problemId, version);
+                }
+            });
+        } else {
+            sendProblemUpdated(problemId, version);
+        }
+    }
+
+    @SuppressWarnings("null")
+    private void sendProblemUpdated(Long problemId, String version) {
+        // 仅用于预热，发送失败时评测机在首次评测时加载
+        kafkaTemplate.send(problemUpdatedTopic, String.valueOf(problemId), new ProblemUpdatedMessage(problemId, version))
+                .whenComplete((r, e) -> {
+                    if (e != null) log.warn("Failed to publish update of problem {}", problemId, e);
+                });
+    }
+
+    private static void checkCompareMode(ProblemConfig config) {
+        String mode = config.getCompareMode();
+        if (mode != null && !COMPARE_MODES.contains(mode.trim().toLowerCase())) {
+            throw new BusinessException(CommonErrorCode.BAD_REQUEST, "Unsupported compare_mode: " + mode);
+        }
+    }
+
     @Transactional
     public void deleteProblem(Long problemId) {
         // Ensure problem exists
         getProblemById(problemId);
 
-        problemMapper.deleteProblemById(problemId);
+        counterService.add(-problemMapper.deleteProblemById(problemId), CounterService.PROBLEMS);
         fileSystemManager.deleteProblemData(problemId);
+        problemMetadataCache.invalidate(problemId);
     }
 }
@@ -0,0 +1,183 @@
+package com.edu.oj.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.edu.oj.dto.RejudgeDto;
+import com.edu.oj.entity.RejudgeTask;
+import com.edu.oj.entity.Submission;
+import com.edu.oj.exceptions.BusinessException;
+import com.edu.oj.exceptions.CommonErrorCode;
+import com.edu.oj.mapper.SubmissionMapper;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 批量重测
+ * <p>
+ * 匹配的提交按 ID 游标分批读出（不会一次性载入内存），再按固定速率投递到 REJUDGE 通道，
+ * 评测机按通道权重处理，正常提交不会被饿死。任务在单独的线程上依次执行，进度可随时查询。
+ */
+@Service
+@Slf4j
+public class RejudgeService {
+
+    private static final int MAX_FINISHED_TASKS = 100;
+
+    @Autowired
+    private SubmissionMapper submissionMapper;
+
+    @Autowired
+    private JudgeService judgeService;
+
+    @Value("${oj.rejudge.rate-per-second:50}")
+    private int ratePerSecond;
+
+    @Value("${oj.rejudge.batch-size:500}")
+    private int batchSize;
+
+    private final AtomicLong taskIds = new AtomicLong();
+    private final ConcurrentMap<Long, RejudgeTask> tasks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Boolean> cancelled = new ConcurrentHashMap<>();
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "rejudge");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 创建重测任务，立即返回，投递在后台进行
+     * @param filter 重测条件
+     * @return 任务进度
+     */
+    public RejudgeTask startRejudge(RejudgeDto filter) {
+        if (filter.getProblemId() == null && filter.getUserId() == null
+                && filter.getFromId() == null && filter.getToId() == null) {
+            throw new BusinessException(CommonErrorCode.PARAM_ERROR, "At least one of problemId, userId, fromId, toId is required");
+        }
+        if (filter.getFromId() != null && filter.getToId() != null && filter.getFromId() > filter.getToId()) {
+            throw new BusinessException(CommonErrorCode.PARAM_ERROR, "fromId must not be greater than toId");
+        }
+
+        RejudgeTask task = new RejudgeTask();
+        task.setId(taskIds.incrementAndGet());
+        task.setFilter(filter);
+        task.setState(RejudgeTask.State.QUEUED);
+        task.setTotal(submissionMapper.countSubmissions(filter.getProblemId(), filter.getUserId(),
+                filter.getFromId(), filter.getToId()));
+        task.setEnqueued(0L);
+        task.setSkipped(0L);
+        task.setStartTime(LocalDateTime.now());
+        tasks.put(task.getId(), task);
+        pruneFinished();
+
+        log.info("Rejudge task {} created: {} submissions matching {}", task.getId(), task.getTotal(), filter);
+        runner.submit(() -> run(task));
+        return task;
+    }
+
+    public RejudgeTask getTask(Long taskId) {
+        RejudgeTask task = tasks.get(taskId);
+        if (task == null) {
+            throw new BusinessException(CommonErrorCode.RESOURCE_NOT_FOUND, "Rejudge task not found: " + taskId);
+        }
+        return task;
+    }
+
+    public List<RejudgeTask> getTasks() {
+        List<RejudgeTask> list = new ArrayList<>(tasks.values());
+        list.sort(Comparator.comparing(RejudgeTask::getId).reversed());
+        return list;
+    }
+
+    /**
+     * 取消任务，已投递的提交仍会被评测
+     */
+    public RejudgeTask cancel(Long taskId) {
+        RejudgeTask task = getTask(taskId);
+        if (task.getState() == RejudgeTask.State.QUEUED || task.getState() == RejudgeTask.State.RUNNING) {
+            cancelled.put(taskId, true);
+        }
+        return task;
+    }
+
+    private void run(RejudgeTask task) {
+        RejudgeDto f = task.getFilter();
+        long cursor = f.getFromId() == null ? 0 : f.getFromId() - 1;
+        long intervalNanos = 1_000_000_000L / Math.max(1, ratePerSecond);
+        long next = System.nanoTime();
+        task.setState(RejudgeTask.State.RUNNING);
+        try {
+            while (true) {
+                Submission[] batch = submissionMapper.getSubmissionsAfterId(
+                        f.getProblemId(), f.getUserId(), f.getToId(), cursor, batchSize);
+                if (batch.length == 0) break;
+                for (Submission sub : batch) {
+                    if (cancelled.containsKey(task.getId())) {
+                        finish(task, RejudgeTask.State.CANCELLED, null);
+                        return;
+                    }
+                    // 按速率投递
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) Thread.sleep(wait / 1_000_000L, (int) (wait % 1_000_000L));
+                    next = Math.max(next, System.nanoTime() - intervalNanos) + intervalNanos;
+
+                    cursor = sub.getId();
+                    task.setLastSubmissionId(cursor);
+                    // 评测中的提交不重测，否则同一提交会有两份结果交错写入
+                    if (judgeService.rejudgeSubmission(sub)) {
+                        task.setEnqueued(task.getEnqueued() + 1);
+                    } else {
+                        task.setSkipped(task.getSkipped() + 1);
+                    }
+                }
+            }
+            finish(task, RejudgeTask.State.DONE, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(task, RejudgeTask.State.CANCELLED, "interrupted");
+        } catch (Exception e) {
+            log.error("Rejudge task {} failed after submission {}", task.getId(), cursor, e);
+            finish(task, RejudgeTask.State.FAILED, e.getMessage());
+        }
+    }
+
+    private void finish(RejudgeTask task, RejudgeTask.State state, String error) {
+        task.setState(state);
+        task.setError(error);
+        task.setEndTime(LocalDateTime.now());
+        cancelled.remove(task.getId());
+        log.info("Rejudge task {} {}: {}/{} enqueued, {} skipped", task.getId(), state, task.getEnqueued(),
+                task.getTotal(), task.getSkipped());
+    }
+
+    // 只保留最近的已结束任务
+    private void pruneFinished() {
+        List<RejudgeTask> finished = new ArrayList<>();
+        for (RejudgeTask t : tasks.values()) {
+            if (t.getState() != RejudgeTask.State.QUEUED && t.getState() != RejudgeTask.State.RUNNING) finished.add(t);
+        }
+        if (finished.size() <= MAX_FINISHED_TASKS) return;
+        finished.sort(Comparator.comparing(RejudgeTask::getId));
+        for (int i = 0; i < finished.size() - MAX_FINISHED_TASKS; i++) {
+            tasks.remove(finished.get(i).getId());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+}
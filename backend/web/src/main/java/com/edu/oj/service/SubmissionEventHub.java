@@ -0,0 +1,166 @@
+package com.edu.oj.service;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.edu.oj.entity.SubmissionConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 评测进度推送（Server-Sent Events）
+ * <p>
+ * 连接走异步 Servlet，空闲连接不占用请求线程。结果消费者每批处理完后推送一次各提交的最新进度
+ * （事件 progress），评测结束推送最终结果（事件 result）并关闭连接。每条事件只序列化一次，
+ * 发送在单独的线程池上进行，慢客户端不会拖慢结果消费。定期发送注释行保活，避免代理断开空闲连接。
+ */
+@Component
+@Slf4j
+public class SubmissionEventHub {
+
+    public static final String EVENT_PROGRESS = "progress";
+    public static final String EVENT_RESULT = "result";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${oj.sse.timeout-minutes:10}")
+    private long timeoutMinutes;
+
+    @Value("${oj.sse.keepalive-seconds:15}")
+    private long keepaliveSeconds;
+
+    private final ConcurrentMap<Long, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    private final ExecutorService pusher = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(r, "sse-push");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ScheduledExecutorService keepalive = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sse-keepalive");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    public void startKeepalive() {
+        keepalive.scheduleWithFixedDelay(() -> subscribers.forEach((submissionId, emitters) -> {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("keepalive"));
+                } catch (IOException | IllegalStateException e) {
+                    unsubscribe(submissionId, emitter);
+                }
+            }
+        }), keepaliveSeconds, keepaliveSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 订阅一个提交的评测进度
+     * <p>
+     * 先登记连接再读取当前进度，读取期间的推送不会丢；已评测结束时只发送最终结果并关闭。
+     * @param loader 读取当前进度
+     */
+    public SseEmitter subscribe(Long submissionId, SnapshotLoader loader) throws IOException {
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutes));
+        subscribers.computeIfAbsent(submissionId, k -> new CopyOnWriteArraySet<>()).add(emitter);
+        emitter.onCompletion(() -> unsubscribe(submissionId, emitter));
+        emitter.onTimeout(() -> unsubscribe(submissionId, emitter));
+        emitter.onError(e -> unsubscribe(submissionId, emitter));
+
+        Snapshot snapshot;
+        try {
+            snapshot = loader.load();
+        } catch (IOException | RuntimeException e) {
+            unsubscribe(submissionId, emitter);
+            throw e;
+        }
+        if (snapshot.finished()) unsubscribe(submissionId, emitter);
+
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(snapshot.finished() ? EVENT_RESULT : EVENT_PROGRESS)
+                    .data(toJson(snapshot.config()), MediaType.APPLICATION_JSON));
+            if (snapshot.finished()) emitter.complete();
+        } catch (IOException e) {
+            unsubscribe(submissionId, emitter);
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * 推送进度；没有订阅者时什么也不做
+     * @param finished 为 true 时推送最终结果并关闭该提交的所有连接
+     */
+    public void publish(Long submissionId, SubmissionConfig config, boolean finished) {
+        Set<SseEmitter> emitters = finished ? subscribers.remove(submissionId) : subscribers.get(submissionId);
+        if (emitters == null || emitters.isEmpty()) return;
+
+        String data = toJson(config);
+        String name = finished ? EVENT_RESULT : EVENT_PROGRESS;
+        pusher.execute(() -> {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+                    if (finished) emitter.complete();
+                } catch (IOException | IllegalStateException e) {
+                    unsubscribe(submissionId, emitter);
+                }
+            }
+        });
+    }
+
+    private void unsubscribe(Long submissionId, SseEmitter emitter) {
+        subscribers.computeIfPresent(submissionId, (k, set) -> {
+            set.remove(emitter);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    // 在调用线程上序列化，之后对象可能继续被修改
+    private String toJson(SubmissionConfig config) {
+        try {
+            synchronized (config) {
+                return objectMapper.writeValueAsString(config);
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize submission progress", e);
+        }
+    }
+
+    public record Snapshot(SubmissionConfig config, boolean finished) {
+    }
+
+    @FunctionalInterface
+    public interface SnapshotLoader {
+        Snapshot load() throws IOException;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        keepalive.shutdownNow();
+        pusher.shutdown();
+        subscribers.values().forEach(set -> set.forEach(SseEmitter::complete));
+        subscribers.clear();
+    }
+}
@@ -0,0 +1,22 @@
+package com.edu.oj.service;
+
+import com.edu.oj.entity.SubmissionConfig;
+
+/**
+ * 评测中提交的进度存储
+ * <p>
+ * 评测结果消费者写入，查询接口读取，评测结束并写入 S3 后删除。
+ * 由 {@code oj.progress-store.type} 选择实现：{@code local} 为单实例内存存储（有容量与过期上限），
+ * {@code database} 为多个后端实例共享的数据库存储。
+ */
+public interface SubmissionProgressStore {
+
+    /**
+     * @return 评测进度，不存在或已过期时返回 null
+     */
+    SubmissionConfig get(Long submissionId);
+
+    void put(Long submissionId, SubmissionConfig config);
+
+    void remove(Long submissionId);
+}
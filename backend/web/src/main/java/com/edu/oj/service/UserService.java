@@ -11,6 +11,7 @@ import com.edu.oj.exceptions.CommonErrorCode;
 
 import com.edu.oj.entity.User;
 import com.edu.oj.mapper.UserMapper;
+import com.edu.oj.response.CountResponse;
 
 import java.util.List;
 
@@ -23,6 +24,13 @@ public class UserService {
     @Autowired
     SessionRegistry sessionRegistry;
 
+    @Autowired
+    CounterService counterService;
+
+    public CountResponse countUsers() {
+        return counterService.get(CounterService.USERS);
+    }
+
     public User[] findAllUsers() {
         return userMapper.findAllUsers();
     }
@@ -44,14 +52,16 @@ public class UserService {
     }
 
     public int registerUser(User user) {
-        return userMapper.insertUser(user);
+        int n = userMapper.insertUser(user);
+        counterService.add(n, CounterService.USERS);
+        return n;
     }
 
     @Transactional
     public void deleteUserById(Long userId) {
         // Ensure user exists
         findUserById(userId);
-        userMapper.deleteUserById(userId);
+        counterService.add(-userMapper.deleteUserById(userId), CounterService.USERS);
     }
 
     @Transactional
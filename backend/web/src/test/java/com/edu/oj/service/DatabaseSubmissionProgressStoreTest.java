@@ -0,0 +1,116 @@
+package com.edu.oj.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.edu.oj.entity.SubmissionConfig;
+import com.edu.oj.mapper.SubmissionProgressMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 共享进度存储的读写与过期，H2 以 MySQL 模式运行表结构与 SQL
+ */
+class DatabaseSubmissionProgressStoreTest {
+
+    private JdbcTemplate jdbc;
+    private DatabaseSubmissionProgressStore store;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:progress;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(ds);
+        jdbc.execute("DROP TABLE IF EXISTS submission_progress");
+        // 同 sqlschema/04_SubmissionProgressdb.sql，去掉外键
+        jdbc.execute("""
+                CREATE TABLE submission_progress (
+                    submission_id BIGINT PRIMARY KEY,
+                    config MEDIUMTEXT NOT NULL,
+                    updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)
+                )
+                """);
+
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), ds));
+        configuration.addMapper(SubmissionProgressMapper.class);
+        SqlSessionFactory factory = new SqlSessionFactoryBuilder().build(configuration);
+
+        store = new DatabaseSubmissionProgressStore();
+        ReflectionTestUtils.setField(store, "progressMapper",
+                new SqlSessionTemplate(factory).getMapper(SubmissionProgressMapper.class));
+        ReflectionTestUtils.setField(store, "jsonMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(store, "ttlMinutes", 30L);
+    }
+
+    @Test
+    void putGetAndRemove() {
+        assertNull(store.get(1L));
+
+        store.put(1L, progress(7));
+        assertEquals(7, store.get(1L).getStatus());
+
+        // 再次写入覆盖同一行
+        store.put(1L, progress(1));
+        assertEquals(1, store.get(1L).getStatus());
+
+        store.remove(1L);
+        assertNull(store.get(1L));
+    }
+
+    @Test
+    void expiredProgressIsIgnoredAndRemoved() {
+        store.put(1L, progress(7));
+        store.put(2L, progress(7));
+        age(1L, 31);
+        age(2L, 29);
+
+        assertNull(store.get(1L));
+        assertNotNull(store.get(2L));
+
+        assertEquals(1, store.removeExpired());
+        assertEquals(0, count(1L));
+        assertEquals(1, count(2L));
+    }
+
+    @Test
+    void writeRefreshesExpiry() {
+        store.put(1L, progress(7));
+        age(1L, 31);
+        store.put(1L, progress(1));
+        assertEquals(1, store.get(1L).getStatus());
+    }
+
+    // 把最后更新时间往前拨，按数据库时钟
+    private void age(Long submissionId, int minutes) {
+        jdbc.update("UPDATE submission_progress SET updated_at = TIMESTAMPADD(MINUTE, ?, CURRENT_TIMESTAMP(3)) "
+                + "WHERE submission_id = ?", -minutes, submissionId);
+    }
+
+    private int count(Long submissionId) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM submission_progress WHERE submission_id = ?",
+                Integer.class, submissionId);
+    }
+
+    private static SubmissionConfig progress(int status) {
+        SubmissionConfig config = new SubmissionConfig();
+        config.setStatus(status);
+        config.setTestResult(new ArrayList<>());
+        config.setTimeUsed(0);
+        config.setMemoryUsed(0);
+        return config;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * oj-launcher: start a submission with limits and without privileges.
+ *
+ * Replaces `su code_runner -s /bin/bash -c "ulimit -s ...; exec ..."`: no PAM, no
+ * shell, one fork+exec from the worker. Must be started as root.
+ *
+ *   oj-launcher -u UID -g GID [-s STACK_KB] [-c CPU] [-p CGROUP_PROCS] -- EXE [ARGS...]
+ *
+ * Exit status 125 means the launcher itself failed before exec (reason on stderr).
+ */
+#define _GNU_SOURCE
+#include <errno.h>
+#include <fcntl.h>
+#include <grp.h>
+#include <sched.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <sys/prctl.h>
+#include <sys/resource.h>
+#include <unistd.h>
+
+#define FAIL(what) do { fprintf(stderr, "oj-launcher: %s: %s\n", what, strerror(errno)); return 125; } while (0)
+
+static char *const clean_env[] = {
+    "PATH=/usr/local/sbin:/usr/local/bin:/usr/sbin:/usr/bin:/sbin:/bin",
+    NULL
+};
+
+int main(int argc, char **argv) {
+    long uid = -1, gid = -1, stack_kb = -1, cpu = -1;
+    const char *procs = NULL;
+    int opt;
+
+    while ((opt = getopt(argc, argv, "+u:g:s:c:p:")) != -1) {
+        switch (opt) {
+            case 'u': uid = strtol(optarg, NULL, 10); break;
+            case 'g': gid = strtol(optarg, NULL, 10); break;
+            case 's': stack_kb = strtol(optarg, NULL, 10); break;
+            case 'c': cpu = strtol(optarg, NULL, 10); break;
+            case 'p': procs = optarg; break;
+            default:
+                fprintf(stderr, "usage: %s -u UID -g GID [-s STACK_KB] [-c CPU] [-p CGROUP_PROCS] -- EXE [ARGS...]\n", argv[0]);
+                return 125;
+        }
+    }
+    if (optind >= argc || uid <= 0 || gid <= 0) {
+        fprintf(stderr, "oj-launcher: missing executable or uid/gid\n");
+        return 125;
+    }
+
+    if (cpu >= 0) {
+        cpu_set_t set;
+        CPU_ZERO(&set);
+        CPU_SET((int) cpu, &set);
+        if (sched_setaffinity(0, sizeof(set), &set) != 0) FAIL("sched_setaffinity");
+    }
+
+    struct rlimit rl;
+    rl.rlim_cur = rl.rlim_max = 0;
+    if (setrlimit(RLIMIT_CORE, &rl) != 0) FAIL("RLIMIT_CORE");
+    if (stack_kb > 0) {
+        rl.rlim_cur = rl.rlim_max = (rlim_t) stack_kb * 1024;
+        if (setrlimit(RLIMIT_STACK, &rl) != 0) FAIL("RLIMIT_STACK");
+    }
+
+    /*
+     * Join the run's cgroup as late as possible, so the launcher's own work is not
+     * charged to the program; it still needs root, so it comes before dropping privileges
+     */
+    if (procs != NULL) {
+        int fd = open(procs, O_WRONLY | O_CLOEXEC);
+        if (fd < 0) FAIL("open cgroup.procs");
+        if (write(fd, "0", 1) != 1) FAIL("write cgroup.procs");
+        close(fd);
+    }
+
+    if (setgroups(0, NULL) != 0) FAIL("setgroups");
+    if (setgid((gid_t) gid) != 0) FAIL("setgid");
+    if (setuid((uid_t) uid) != 0) FAIL("setuid");
+    if (prctl(PR_SET_NO_NEW_PRIVS, 1, 0, 0, 0) != 0) FAIL("PR_SET_NO_NEW_PRIVS");
+
+    execve(argv[optind], &argv[optind], clean_env);
+    FAIL("execve");
+}
@@ -0,0 +1,102 @@
+package com.edu.oj.config;
+
+import com.edu.oj.executor.CpuPool;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@EnableConfigurationProperties(JudgeProperties.class)
+@Slf4j
+public class JudgeConfig {
+
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+
+    @Bean(destroyMethod = "shutdown")
+    public CpuPool cpuPool(JudgeProperties props) {
+        if (!props.isPinCpu()) {
+            return new CpuPool(props.getCaseThreads(), null);
+        }
+        List<Integer> cpus = pinnedCpus(props, allowedCpus());
+        if (cpus == null) {
+            return new CpuPool(props.getCaseThreads(), null);
+        }
+        log.info("Case runs pinned to CPUs {}", cpus);
+        return new CpuPool(cpus.size(), cpus);
+    }
+
+    /**
+     * 选出用于绑核的 CPU
+     * <p>
+     * Only CPUs in the affinity mask of the worker can be pinned to, the launcher's
+     * sched_setaffinity fails on any other and the case ends as RE. Without
+     * {@code judge.case-cpus} the first caseThreads allowed CPUs are used.
+     * @param allowed affinity mask of the process, null when unknown
+     * @return CPUs to pin to, or null to run without pinning
+     */
+    static List<Integer> pinnedCpus(JudgeProperties props, List<Integer> allowed) {
+        if (props.getCaseCpus() != null && !props.getCaseCpus().isBlank()) {
+            List<Integer> cpus = parseCpuList(props.getCaseCpus());
+            if (allowed != null && !allowed.containsAll(cpus)) {
+                List<Integer> outside = new ArrayList<>(cpus);
+                outside.removeAll(allowed);
+                log.warn("judge.case-cpus {} outside the allowed CPUs {}, ignored", outside, allowed);
+                cpus.retainAll(allowed);
+            }
+            if (cpus.isEmpty()) {
+                log.warn("No usable CPU in judge.case-cpus, case runs are not pinned");
+                return null;
+            }
+            return cpus;
+        }
+        if (allowed == null || allowed.isEmpty()) {
+            log.warn("CPU affinity of the worker is unknown, case runs are not pinned");
+            return null;
+        }
+        if (allowed.size() < props.getCaseThreads()) {
+            log.warn("Only {} CPUs allowed, case pool shrinks from {} threads", allowed.size(), props.getCaseThreads());
+        }
+        return new ArrayList<>(allowed.subList(0, Math.min(allowed.size(), props.getCaseThreads())));
+    }
+
+    // Cpus_allowed_list of /proc/self/status, the mask sched_getaffinity returns
+    private static List<Integer> allowedCpus() {
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS)) {
+                if (line.startsWith("Cpus_allowed_list:")) {
+                    return parseCpuList(line.substring("Cpus_allowed_list:".length()));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot read the CPU affinity from {}", PROC_STATUS, e);
+        }
+        return null;
+    }
+
+    /**
+     * 解析 CPU 列表，格式同 cpuset，例如 "0-3,8,10-11"
+     */
+    static List<Integer> parseCpuList(String list) {
+        List<Integer> cpus = new ArrayList<>();
+        for (String part : list.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) continue;
+            int dash = part.indexOf('-');
+            if (dash < 0) {
+                cpus.add(Integer.parseInt(part));
+            } else {
+                int to = Integer.parseInt(part.substring(dash + 1).trim());
+                for (int i = Integer.parseInt(part.substring(0, dash).trim()); i <= to; i++) cpus.add(i);
+            }
+        }
+        return cpus;
+    }
+}
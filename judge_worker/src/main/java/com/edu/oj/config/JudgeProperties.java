@@ -0,0 +1,124 @@
+package com.edu.oj.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "judge")
+public class JudgeProperties {
+    /** Root directory of the worker-local caches (problem data, ...). */
+    private String cacheDir = "/tmp/oj-judge-cache";
+    /** Upper bound of extracted problem data kept on disk, in bytes. */
+    private long problemCacheMaxBytes = 2L * 1024 * 1024 * 1024;
+    /** Parallel downloads of testdata files when a problem is loaded from its manifest. */
+    private int testdataDownloadThreads = 8;
+    /** Problems loaded into the cache at startup, e.g. the problems of a running contest. */
+    private List<Long> prefetchProblemIds = new ArrayList<>();
+    /** Concurrent problem loads of the prefetcher (startup list and problem-updated events). */
+    private int prefetchThreads = 2;
+    /** Upper bound of cached executables and compile logs on disk, in bytes. */
+    private long compileCacheMaxBytes = 512L * 1024 * 1024;
+
+    /** Run the test cases of one submission concurrently on the case pool. */
+    private boolean parallelCases = false;
+    /** Size of the per-worker case pool shared by all submissions. */
+    private int caseThreads = Runtime.getRuntime().availableProcessors();
+    /** Pin every case run to one core of the pool. */
+    private boolean pinCpu = true;
+    /** Cores used for pinning, e.g. "2,3,4,5" or "4-7"; defaults to the first caseThreads CPUs the worker may run on. */
+    private String caseCpus;
+    /** What to do after a test case fails. */
+    private FailurePolicy failurePolicy = FailurePolicy.STOP_ON_FIRST_FAILURE;
+
+    /** Run every test in its own cgroup v2 (exact CPU time and peak memory). */
+    private boolean cgroupEnabled = false;
+    /** Parent cgroup of the per-run cgroups. */
+    private String cgroupRoot = "/sys/fs/cgroup/judge";
+    /** pids.max of a run. */
+    private long pidsLimit = 64;
+    /** In cgroup mode a run is killed after timeLimit * factor + 1s of wall clock. */
+    private long wallTimeFactor = 2;
+
+    /** Period of the shared VmRSS sampler when cgroup mode is off. */
+    private long monitorIntervalMs = 10;
+
+    /** Native launcher that starts test runs; su + bash is used when it is missing. */
+    private String launcher = "/usr/local/bin/oj-launcher";
+    /** uid/gid of code_runner, the launcher drops to them. */
+    private int runnerUid = 10001;
+    private int runnerGid = 10001;
+    /** uid/gid of checker_runner, which runs checkers; the problem tree is group-readable by checkerGid only. */
+    private int checkerUid = 10002;
+    private int checkerGid = 10002;
+
+    public enum FailurePolicy {
+        /** Report the first failing case (in case order) as final and skip the rest. */
+        STOP_ON_FIRST_FAILURE,
+        /** Run and report every case, the verdict is the first failure. */
+        RUN_ALL
+    }
+
+    public String getCacheDir() { return cacheDir; }
+    public void setCacheDir(String cacheDir) { this.cacheDir = cacheDir; }
+
+    public long getProblemCacheMaxBytes() { return problemCacheMaxBytes; }
+    public void setProblemCacheMaxBytes(long problemCacheMaxBytes) { this.problemCacheMaxBytes = problemCacheMaxBytes; }
+
+    public int getTestdataDownloadThreads() { return testdataDownloadThreads; }
+    public void setTestdataDownloadThreads(int testdataDownloadThreads) { this.testdataDownloadThreads = testdataDownloadThreads; }
+
+    public List<Long> getPrefetchProblemIds() { return prefetchProblemIds; }
+    public void setPrefetchProblemIds(List<Long> prefetchProblemIds) { this.prefetchProblemIds = prefetchProblemIds; }
+
+    public int getPrefetchThreads() { return prefetchThreads; }
+    public void setPrefetchThreads(int prefetchThreads) { this.prefetchThreads = prefetchThreads; }
+
+    public long getCompileCacheMaxBytes() { return compileCacheMaxBytes; }
+    public void setCompileCacheMaxBytes(long compileCacheMaxBytes) { this.compileCacheMaxBytes = compileCacheMaxBytes; }
+
+    public boolean isParallelCases() { return parallelCases; }
+    public void setParallelCases(boolean parallelCases) { this.parallelCases = parallelCases; }
+
+    public int getCaseThreads() { return caseThreads; }
+    public void setCaseThreads(int caseThreads) { this.caseThreads = caseThreads; }
+
+    public boolean isPinCpu() { return pinCpu; }
+    public void setPinCpu(boolean pinCpu) { this.pinCpu = pinCpu; }
+
+    public String getCaseCpus() { return caseCpus; }
+    public void setCaseCpus(String caseCpus) { this.caseCpus = caseCpus; }
+
+    public FailurePolicy getFailurePolicy() { return failurePolicy; }
+    public void setFailurePolicy(FailurePolicy failurePolicy) { this.failurePolicy = failurePolicy; }
+
+    public boolean isCgroupEnabled() { return cgroupEnabled; }
+    public void setCgroupEnabled(boolean cgroupEnabled) { this.cgroupEnabled = cgroupEnabled; }
+
+    public String getCgroupRoot() { return cgroupRoot; }
+    public void setCgroupRoot(String cgroupRoot) { this.cgroupRoot = cgroupRoot; }
+
+    public long getPidsLimit() { return pidsLimit; }
+    public void setPidsLimit(long pidsLimit) { this.pidsLimit = pidsLimit; }
+
+    public long getWallTimeFactor() { return wallTimeFactor; }
+    public void setWallTimeFactor(long wallTimeFactor) { this.wallTimeFactor = wallTimeFactor; }
+
+    public long getMonitorIntervalMs() { return monitorIntervalMs; }
+    public void setMonitorIntervalMs(long monitorIntervalMs) { this.monitorIntervalMs = monitorIntervalMs; }
+
+    public String getLauncher() { return launcher; }
+    public void setLauncher(String launcher) { this.launcher = launcher; }
+
+    public int getRunnerUid() { return runnerUid; }
+    public void setRunnerUid(int runnerUid) { this.runnerUid = runnerUid; }
+
+    public int getRunnerGid() { return runnerGid; }
+    public void setRunnerGid(int runnerGid) { this.runnerGid = runnerGid; }
+
+    public int getCheckerUid() { return checkerUid; }
+    public void setCheckerUid(int checkerUid) { this.checkerUid = checkerUid; }
+
+    public int getCheckerGid() { return checkerGid; }
+    public void setCheckerGid(int checkerGid) { this.checkerGid = checkerGid; }
+}
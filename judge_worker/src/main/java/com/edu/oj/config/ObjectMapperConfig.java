@@ -1,6 +1,7 @@
 package com.edu.oj.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -17,4 +18,13 @@ public class ObjectMapperConfig {
     public ObjectMapper jsonMapper() {
         return new ObjectMapper();
     }
+
+    /**
+     * manifest.json published by the backend: snake_case keys, like config.yml. Unknown
+     * keys still fail, a format mismatch must not silently default the limits.
+     */
+    @Bean(name="manifestMapper")
+    public ObjectMapper manifestMapper() {
+        return new ObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+    }
 }
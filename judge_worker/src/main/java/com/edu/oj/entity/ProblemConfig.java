@@ -9,4 +9,12 @@ public class ProblemConfig {
     private Long number_count;
     private Long time_limit;
     private Long memory_limit;
+    // exact | line (default) | token | float
+    private String compare_mode;
+    private Double float_abs_eps;
+    private Double float_rel_eps;
+    // special judge: testlib-style checker source inside the zip, e.g. checker.cpp
+    private String checker;
+    private Long checker_time_limit;
+    private Long checker_memory_limit;
 }
@@ -0,0 +1,134 @@
+package com.edu.oj.executor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal cgroup v2 helper: one parent cgroup for the worker with the cpu, memory
+ * and pids controllers delegated, and one child cgroup per sandboxed run.
+ */
+@Slf4j
+public class CgroupV2 {
+
+    private static final String CONTROLLERS = "+cpu +memory +pids";
+
+    private final Path base;
+    private final AtomicLong seq = new AtomicLong();
+
+    private CgroupV2(Path base) {
+        this.base = base;
+    }
+
+    /**
+     * Prepares {@code base} for per-run children.
+     * @return the helper, or null when cgroup v2 is not usable here
+     */
+    public static CgroupV2 init(String basePath) {
+        try {
+            Path base = Paths.get(basePath).toAbsolutePath();
+            Path parent = base.getParent();
+            if (!Files.exists(parent.resolve("cgroup.controllers"))) {
+                log.warn("cgroup v2 is not mounted at {}", parent);
+                return null;
+            }
+            Files.createDirectories(base);
+            try {
+                write(parent.resolve("cgroup.subtree_control"), CONTROLLERS);
+            } catch (IOException e) {
+                // "No internal processes": inside a container the worker itself usually sits in
+                // the namespace root, move it into a leaf next to the judge cgroup and retry.
+                Path self = parent.resolve("supervisor");
+                Files.createDirectories(self);
+                for (String pid : Files.readAllLines(parent.resolve("cgroup.procs"))) {
+                    try { write(self.resolve("cgroup.procs"), pid); } catch (IOException ignored) {}
+                }
+                write(parent.resolve("cgroup.subtree_control"), CONTROLLERS);
+            }
+            write(base.resolve("cgroup.subtree_control"), CONTROLLERS);
+            log.info("cgroup v2 sandbox enabled at {}", base);
+            return new CgroupV2(base);
+        } catch (Exception e) {
+            log.warn("cgroup v2 sandbox unavailable, falling back to /proc polling", e);
+            return null;
+        }
+    }
+
+    /**
+     * Creates a fresh child cgroup with memory and pids limits.
+     */
+    public Path create(long memoryLimitBytes, long pidsLimit) throws IOException {
+        Path cg = base.resolve("run_" + seq.incrementAndGet());
+        Files.createDirectory(cg);
+        write(cg.resolve("memory.max"), String.valueOf(memoryLimitBytes));
+        try {
+            write(cg.resolve("memory.swap.max"), "0");
+        } catch (IOException ignored) {
+            // no swap accounting on this host
+        }
+        write(cg.resolve("pids.max"), String.valueOf(pidsLimit));
+        return cg;
+    }
+
+    /** Total CPU time (user + system) of the cgroup in microseconds. */
+    public static long cpuUsageUsec(Path cg) {
+        return readKeyed(cg.resolve("cpu.stat"), "usage_usec");
+    }
+
+    /** Peak memory usage of the cgroup in bytes, or -1 if the kernel does not report it. */
+    public static long memoryPeakBytes(Path cg) {
+        try {
+            return Long.parseLong(Files.readString(cg.resolve("memory.peak")).trim());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /** Number of processes killed by the OOM killer because of memory.max. */
+    public static long oomKills(Path cg) {
+        return Math.max(0, readKeyed(cg.resolve("memory.events"), "oom_kill"));
+    }
+
+    /**
+     * Kills whatever is left in the cgroup and removes it.
+     */
+    public static void destroy(Path cg) {
+        if (cg == null) return;
+        try {
+            Path kill = cg.resolve("cgroup.kill");
+            if (Files.exists(kill)) write(kill, "1");
+        } catch (IOException ignored) {
+        }
+        // rmdir fails with EBUSY until the killed tasks are reaped
+        for (int i = 0; i < 100; i++) {
+            try {
+                Files.deleteIfExists(cg);
+                return;
+            } catch (IOException e) {
+                try { Thread.sleep(5); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); return; }
+            }
+        }
+        log.warn("Failed to remove cgroup {}", cg);
+    }
+
+    private static long readKeyed(Path file, String key) {
+        try {
+            List<String> lines = Files.readAllLines(file);
+            for (String line : lines) {
+                if (line.startsWith(key + " ")) {
+                    return Long.parseLong(line.substring(key.length() + 1).trim());
+                }
+            }
+        } catch (Exception ignored) {
+        }
+        return -1;
+    }
+
+    private static void write(Path file, String value) throws IOException {
+        Files.writeString(file, value, StandardCharsets.US_ASCII, StandardOpenOption.WRITE);
+    }
+}
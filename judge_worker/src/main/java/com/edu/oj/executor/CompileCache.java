@@ -0,0 +1,251 @@
+package com.edu.oj.executor;
+
+import com.edu.oj.config.JudgeProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed cache of compiled executables.
+ * <p>
+ * Key is SHA-256 over language, compiler version, flags and source. Both successful
+ * builds (executable + log) and compile errors (log only) are cached. A failure is only
+ * a compile error when the compiler exited with its diagnostic status 1 and the log shows
+ * no resource problem; timeouts, signals (OOM kill), internal compiler errors and I/O
+ * errors are not remembered, resubmitting the same source compiles again.
+ * Disk usage is bounded by {@code judge.compile-cache-max-bytes} with LRU eviction.
+ */
+@Component
+@Slf4j
+public class CompileCache {
+
+    public static final String COMPILE_TIMEOUT = "compile_timeout";
+
+    /** Exit status of g++ for errors in the source. */
+    private static final int DIAGNOSTIC_EXIT = 1;
+    // Messages of failures caused by the machine rather than the source
+    private static final List<String> ENVIRONMENT_ERRORS = List.of(
+            "No space left on device", "Cannot allocate memory", "error writing to",
+            "internal compiler error", "Killed signal terminated program");
+
+    @FunctionalInterface
+    public interface Compiler {
+        Result compile(Path source, Path exe) throws Exception;
+    }
+
+    public static class Result {
+        public final boolean ok;
+        public final String log;
+        public final boolean cached;
+        /** Exit status of the compiler, -1 if it did not exit by itself. */
+        public final int exitCode;
+
+        public Result(boolean ok, String log, int exitCode) {
+            this(ok, log, false, exitCode);
+        }
+
+        Result(boolean ok, String log, boolean cached, int exitCode) {
+            this.ok = ok;
+            this.log = log;
+            this.cached = cached;
+            this.exitCode = exitCode;
+        }
+    }
+
+    private final Path root;
+    private final long maxBytes;
+
+    // access-ordered, guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    // one lock per key while someone compiles or waits for it, see KeyLock
+    private final ConcurrentMap<String, KeyLock> locks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> compilerVersions = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CompileCache(JudgeProperties props) throws IOException {
+        this.root = Paths.get(props.getCacheDir(), "compile").toAbsolutePath();
+        this.maxBytes = props.getCompileCacheMaxBytes();
+        deleteTree(root);
+        Files.createDirectories(root);
+    }
+
+    /**
+     * Returns the cached build for this source or compiles it.
+     * @param compiler compiler executable, its --version is part of the key
+     * @param exe where the executable is placed on success
+     */
+    public Result compile(String language, String compiler, List<String> flags, Path source, Path exe,
+                          Compiler c) throws Exception {
+        String key = key(language, compiler, flags, source);
+
+        Entry e = lookup(key);
+        boolean hit = e != null;
+        if (hit) {
+            hits.incrementAndGet();
+        } else {
+            KeyLock lock = locks.compute(key, (k, l) -> {
+                if (l == null) l = new KeyLock();
+                l.users++;
+                return l;
+            });
+            try {
+                synchronized (lock) {
+                    e = lookup(key);
+                    hit = e != null;
+                    if (hit) {
+                        hits.incrementAndGet();
+                    } else {
+                        misses.incrementAndGet();
+                        e = build(key, source, c);
+                    }
+                }
+            } finally {
+                // Dropped only by the last user, so a late arrival never gets a second lock
+                // while an earlier build of the same key is still running
+                locks.computeIfPresent(key, (k, l) -> --l.users == 0 ? null : l);
+            }
+        }
+        log.debug("Compile cache {} key={}", hit ? "hit" : "miss", key);
+
+        if (e.ok) {
+            try {
+                Files.deleteIfExists(exe);
+                try {
+                    Files.createLink(exe, e.exe);
+                } catch (UnsupportedOperationException | FileSystemException ex) {
+                    Files.copy(e.exe, exe, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            } catch (NoSuchFileException ex) {
+                // evicted between lookup and link
+                return c.compile(source, exe);
+            }
+        }
+        return new Result(e.ok, e.log, hit, e.exitCode);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private synchronized Entry lookup(String key) {
+        return entries.get(key);
+    }
+
+    private Entry build(String key, Path source, Compiler c) throws Exception {
+        Path dir = root.resolve(key);
+        deleteTree(dir);
+        Files.createDirectories(dir);
+        Path exe = dir.resolve("main");
+        Result r = c.compile(source, exe);
+        if (!r.ok && !isCompileError(r)) {
+            // Might be a loaded or full machine rather than the source, do not remember it
+            deleteTree(dir);
+            return new Entry(null, null, false, r.log, 0, r.exitCode);
+        }
+        long bytes = r.log == null ? 0 : r.log.length();
+        if (r.ok) bytes += Files.size(exe);
+
+        Entry e = new Entry(dir, r.ok ? exe : null, r.ok, r.log, bytes, r.exitCode);
+        List<Path> toDelete = new ArrayList<>();
+        synchronized (this) {
+            entries.put(key, e);
+            totalBytes += bytes;
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Entry> victim = it.next();
+                if (victim.getKey().equals(key)) continue;
+                it.remove();
+                totalBytes -= victim.getValue().bytes;
+                toDelete.add(victim.getValue().dir);
+            }
+        }
+        // Links already handed out keep their inode alive, deleting the cached copy is safe
+        toDelete.forEach(CompileCache::deleteTree);
+        return e;
+    }
+
+    private static boolean isCompileError(Result r) {
+        if (r.exitCode != DIAGNOSTIC_EXIT || r.log == null || COMPILE_TIMEOUT.equals(r.log)) return false;
+        for (String m : ENVIRONMENT_ERRORS) {
+            if (r.log.contains(m)) return false;
+        }
+        return true;
+    }
+
+    private String key(String language, String compiler, List<String> flags, Path source) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update((language + "\0" + compilerVersion(compiler) + "\0" + String.join(" ", flags) + "\0")
+                .getBytes(StandardCharsets.UTF_8));
+        try (InputStream is = Files.newInputStream(source)) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = is.read(buf)) > 0) md.update(buf, 0, n);
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private String compilerVersion(String compiler) {
+        return compilerVersions.computeIfAbsent(compiler, c -> {
+            try {
+                Process p = new ProcessBuilder(c, "--version").redirectErrorStream(true).start();
+                String out = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                p.waitFor(10, TimeUnit.SECONDS);
+                String first = out.lines().findFirst().orElse("");
+                log.info("Compiler {}: {}", c, first);
+                return first;
+            } catch (Exception e) {
+                // Unknown version: do not memoize, so an upgraded compiler is not keyed as the old one
+                throw new IllegalStateException("Failed to get version of " + c, e);
+            }
+        });
+    }
+
+    private static void deleteTree(Path p) {
+        if (p == null || !Files.exists(p)) return;
+        try (var s = Files.walk(p)) {
+            s.sorted(Comparator.reverseOrder())
+                    .forEach(x -> { try { Files.deleteIfExists(x); } catch (Exception ignored) {} });
+        } catch (Exception ignored) {
+        }
+    }
+
+    // users is only changed inside ConcurrentHashMap.compute for its key
+    private static final class KeyLock {
+        int users;
+    }
+
+    private static class Entry {
+        final Path dir;
+        final Path exe;
+        final boolean ok;
+        final String log;
+        final long bytes;
+        final int exitCode;
+
+        Entry(Path dir, Path exe, boolean ok, String log, long bytes, int exitCode) {
+            this.dir = dir;
+            this.exe = exe;
+            this.ok = ok;
+            this.log = log;
+            this.bytes = bytes;
+            this.exitCode = exitCode;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.edu.oj.executor;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Bounded pool for running test cases, shared by all submissions of a worker.
+ * When pinning is enabled every task borrows one core id for its whole run, so at
+ * most one sandboxed program is scheduled on each core.
+ */
+public class CpuPool {
+
+    @FunctionalInterface
+    public interface CpuTask<T> {
+        /**
+         * @param cpu core to pin the run to, or -1 for no pinning
+         */
+        T run(int cpu) throws Exception;
+    }
+
+    private final ExecutorService executor;
+    private final BlockingQueue<Integer> cpus;
+
+    /**
+     * @param threads number of concurrent case runs
+     * @param cpus cores to pin runs to, one per thread; null disables pinning
+     */
+    public CpuPool(int threads, List<Integer> cpus) {
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "case-runner");
+            t.setDaemon(true);
+            return t;
+        });
+        this.cpus = cpus == null ? null : new LinkedBlockingQueue<>(cpus);
+    }
+
+    public <T> Future<T> submit(CpuTask<T> task) {
+        return executor.submit(() -> {
+            if (cpus == null) return task.run(-1);
+            Integer cpu = cpus.take();
+            try {
+                return task.run(cpu);
+            } finally {
+                cpus.add(cpu);
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,19 +1,25 @@
 package com.edu.oj.executor;
 
+import com.edu.oj.config.JudgeProperties;
 import com.edu.oj.entity.ProblemConfig;
+import com.edu.oj.entity.ProblemMetadata;
+import com.edu.oj.entity.TestCaseInfo;
 import com.edu.oj.manager.FileSystemManager;
+import com.edu.oj.manager.ProblemDataCache;
 import com.edu.oj.message.ResultMessage;
 import com.edu.oj.message.SubmissionMessage;
+import org.springframework.stereotype.Component;
 
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+@Component
 public class JudgeExecutor {
 
     public static final long ST_ACCEPTED = 0;
@@ -25,10 +31,27 @@ public class JudgeExecutor {
     public static final long ST_COMPILE_ERROR = -1;
     public static final long ST_SYSTEM_ERROR = -2;
 
-    private final FileSystemManager fsm;
+    private static final String CPP_COMPILER = "g++";
+    private static final List<String> CPP_FLAGS = List.of("-O2", "-std=c++17", "-pipe");
+    private static final long COMPILE_TIMEOUT_MS = 10_000;
+    // testlib.h alone takes several seconds to compile
+    private static final long CHECKER_COMPILE_TIMEOUT_MS = 60_000;
 
-    public JudgeExecutor(FileSystemManager fsm) {
+    private final FileSystemManager fsm;
+    private final ProblemDataCache problemCache;
+    private final CpuPool cpuPool;
+    private final SandboxRunner sandbox;
+    private final CompileCache compileCache;
+    private final JudgeProperties props;
+
+    public JudgeExecutor(FileSystemManager fsm, ProblemDataCache problemCache, CpuPool cpuPool,
+                         SandboxRunner sandbox, CompileCache compileCache, JudgeProperties props) {
         this.fsm = fsm;
+        this.problemCache = problemCache;
+        this.cpuPool = cpuPool;
+        this.sandbox = sandbox;
+        this.compileCache = compileCache;
+        this.props = props;
     }
 
     public void judge(SubmissionMessage sm, Consumer<ResultMessage> out) {
@@ -42,33 +65,30 @@ public class JudgeExecutor {
         start.setMessage("judge_start");
         out.accept(start);
 
-        Path probRoot = null;
+        ProblemDataCache.Lease lease = null;
         Path work = null;
 
         try {
-            probRoot = fsm.extractProblemToTemp(sm.problemId);
-            ProblemConfig pc = fsm.getProblemConfig(sm.problemId);
+            lease = problemCache.acquire(sm.problemId);
+            Path probRoot = lease.getRoot();
+            ProblemMetadata meta = lease.getMetadata();
+            ProblemConfig pc = meta.getConfig();
             long timeLimitMs = pc.getTime_limit() == null ? 1000 : pc.getTime_limit();
             long memoryLimitMb = pc.getMemory_limit() == null ? 256 : pc.getMemory_limit();
+            OutputComparator cmp = OutputComparator.forConfig(pc);
+            long checkerTimeLimitMs = pc.getChecker_time_limit() == null ? 5000 : pc.getChecker_time_limit();
+            long checkerMemoryLimitMb = pc.getChecker_memory_limit() == null ? 512 : pc.getChecker_memory_limit();
 
             Path tcDir = probRoot.resolve("testcases");
-            List<Path> inputs;
-            try (Stream<Path> s = Files.list(tcDir)) {
-                inputs = s.filter(p -> p.getFileName().toString().endsWith(".in"))
-                        .sorted(Comparator.comparing(p -> p.getFileName().toString()))
-                        .collect(Collectors.toList());
-            }
+            List<TestCaseInfo> cases = meta.getTestCases();
 
-            long numCases = inputs.size();
+            long numCases = cases.size();
 
             work = Files.createTempDirectory("judge_" + sm.submissionId + "_");
-            // Allow code_runner to access this directory
-            try {
-                Set<java.nio.file.attribute.PosixFilePermission> perms = java.nio.file.attribute.PosixFilePermissions.fromString("rwxrwxrwx");
-                Files.setPosixFilePermissions(work, perms);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            // Root-owned and search-only for others: code_runner can exec main and the checker
+            // can open the outputs by path, but neither can create, rename or replace anything
+            // here. Outputs are opened by the worker, the program only gets its own stdout fd.
+            Files.setPosixFilePermissions(work, java.nio.file.attribute.PosixFilePermissions.fromString("rwx--x--x"));
 
             Path code = work.resolve("code.cpp");
             String ext = FileSystemManager.getExtensionByLanguage(sm.language);
@@ -85,7 +105,10 @@ public class JudgeExecutor {
             }
 
             Path exe = work.resolve("main");
-            CompileResult cr = compileCpp(code, exe, 10_000);
+            long compileStart = System.nanoTime();
+            CompileCache.Result cr = compileCache.compile("cpp", CPP_COMPILER, CPP_FLAGS, code, exe,
+                    (src, target) -> compileCpp(src, target, CPP_FLAGS, COMPILE_TIMEOUT_MS));
+            long compileMs = (System.nanoTime() - compileStart) / 1_000_000L;
 
             ResultMessage compileMsg = new ResultMessage();
             compileMsg.setSubmissionId(sm.submissionId);
@@ -95,6 +118,7 @@ public class JudgeExecutor {
             compileMsg.setTimeUsed(0L);
             compileMsg.setMemoryUsed(0L);
             compileMsg.setCorrect(true);
+            compileMsg.setCompileTimeUsed(compileMs);
 
             if (!cr.ok) {
                 compileMsg.setStatus(ST_COMPILE_ERROR);
@@ -103,13 +127,39 @@ public class JudgeExecutor {
                 compileMsg.setScore(0L);
                 out.accept(compileMsg);
                 return;
-            } else {
-                compileMsg.setStatus(ST_WAITING);
-                compileMsg.setMessage("compile_ok");
-                compileMsg.setIsOver(false);
-                out.accept(compileMsg);
             }
 
+            // Special judge: the checker is compiled once per problem version, later
+            // submissions get it from the compile cache
+            Path checker = null;
+            if (pc.getChecker() != null && !pc.getChecker().isBlank()) {
+                Path checkerSrc = probRoot.resolve(pc.getChecker()).normalize();
+                if (!checkerSrc.startsWith(probRoot) || !Files.isRegularFile(checkerSrc)) {
+                    ResultMessage rm = systemError(sm, "checker_not_found: " + pc.getChecker());
+                    rm.setNumCases(numCases);
+                    out.accept(rm);
+                    return;
+                }
+                checker = work.resolve("checker");
+                List<String> checkerFlags = new ArrayList<>(CPP_FLAGS);
+                checkerFlags.add("-I" + checkerSrc.getParent());
+                long checkerStart = System.nanoTime();
+                CompileCache.Result ccr = compileCache.compile("cpp-checker", CPP_COMPILER, checkerFlags, checkerSrc, checker,
+                        (src, target) -> compileCpp(src, target, checkerFlags, CHECKER_COMPILE_TIMEOUT_MS));
+                compileMsg.setCheckerCompileTimeUsed((System.nanoTime() - checkerStart) / 1_000_000L);
+                if (!ccr.ok) {
+                    ResultMessage rm = systemError(sm, "checker_compile_error: " + trunc(ccr.log, 8000));
+                    rm.setNumCases(numCases);
+                    out.accept(rm);
+                    return;
+                }
+            }
+
+            compileMsg.setStatus(ST_WAITING);
+            compileMsg.setMessage("compile_ok");
+            compileMsg.setIsOver(false);
+            out.accept(compileMsg);
+
             if (numCases == 0) {
                 ResultMessage done = new ResultMessage();
                 done.setSubmissionId(sm.submissionId);
@@ -129,72 +179,62 @@ public class JudgeExecutor {
 
             long totalScore = 0;
             long perScore = 100 / numCases;
+            boolean stopOnFailure = props.getFailurePolicy() == JudgeProperties.FailurePolicy.STOP_ON_FIRST_FAILURE;
+
+            // Parallel mode: fan all cases out to the case pool up front, then report them
+            // in case order below. Cases after the first known failure are skipped.
+            List<Future<ResultMessage>> pending = new ArrayList<>();
+            AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+            if (props.isParallelCases()) {
+                for (int i = 0; i < cases.size(); i++) {
+                    int idx = i;
+                    Path workFinal = work;
+                    Path checkerFinal = checker;
+                    pending.add(cpuPool.submit(cpu -> {
+                        if (idx > firstFailure.get()) return null;
+                        ResultMessage rm = runCase(cases.get(idx), idx + 1, tcDir, workFinal, exe, timeLimitMs, memoryLimitMb, cmp,
+                                checkerFinal, checkerTimeLimitMs, checkerMemoryLimitMb, cpu);
+                        if (stopOnFailure && rm.getStatus() != ST_ACCEPTED) {
+                            firstFailure.accumulateAndGet(idx, Math::min);
+                        }
+                        return rm;
+                    }));
+                }
+            }
 
-            for (int i = 0; i < inputs.size(); i++) {
-                long tcId = i + 1;
-                Path in = inputs.get(i);
-                Path exp = tcDir.resolve(stripExt(in.getFileName().toString()) + ".out");
-                Path userOut = work.resolve("user_" + tcId + ".out");
-
-                SandboxRunner.RunResult rr = SandboxRunner.run(exe, in, userOut, timeLimitMs, memoryLimitMb);
-
-                String inputStr = safeRead(in, 4096);
-                String expStr = Files.exists(exp) ? safeRead(exp, 4096) : "";
-                String usrStr = Files.exists(userOut) ? safeRead(userOut, 4096) : "";
-
-                long status;
-                String msg;
-
-                if (rr.tle) {
-                    status = ST_TIME_LIMIT;
-                    msg = "time_limit_exceeded";
-                } else if (rr.mle) {
-                    status = ST_MEMORY_LIMIT;
-                    msg = "memory_limit_exceeded";
-                } else if (!rr.ok) {
-                    status = ST_RUNTIME_ERROR;
-                    msg = "runtime_error(exit=" + rr.exitCode + ")";
-                } else {
-                    boolean same = OutputComparator.sameOutput(exp, userOut);
-                    if (same) {
-                        status = ST_ACCEPTED;
-                        msg = "accepted";
+            try {
+                for (int i = 0; i < cases.size(); i++) {
+                    ResultMessage rm = props.isParallelCases()
+                            ? pending.get(i).get()
+                            : runCase(cases.get(i), i + 1, tcDir, work, exe, timeLimitMs, memoryLimitMb, cmp,
+                                    checker, checkerTimeLimitMs, checkerMemoryLimitMb, -1);
+
+                    long status = rm.getStatus();
+                    if (status == ST_ACCEPTED) {
                         totalScore += perScore;
-                    } else {
-                        status = ST_WRONG_ANSWER;
-                        msg = "wrong_answer";
                     }
-                }
-
-                ResultMessage rm = new ResultMessage();
-                rm.setSubmissionId(sm.submissionId);
-                rm.setProblemId(sm.problemId);
-                rm.setTestCaseId(tcId);
-                rm.setNumCases(numCases);
-                rm.setScore(totalScore);
-                rm.setTimeUsed(rr.timeMs);
-                rm.setMemoryUsed(rr.rssKb);
-                rm.setStatus(status);
-                rm.setInput(inputStr);
-                rm.setExpectedOutput(expStr);
-                rm.setUserOutput(usrStr);
-                rm.setMessage(msg);
-                rm.setCorrect(true);
-                
-                // Logic for IsOver:
-                // If status is NOT ACCEPTED, we stop here and mark IsOver=true.
-                // If status IS ACCEPTED, we check if it's the last case. If so, IsOver=true.
-                if (status != ST_ACCEPTED) {
-                    rm.setIsOver(true);
-                    out.accept(rm);
-                    return; // Stop judging
-                } else {
-                    if (i == inputs.size() - 1) {
+                    rm.setSubmissionId(sm.submissionId);
+                    rm.setProblemId(sm.problemId);
+                    rm.setNumCases(numCases);
+                    rm.setScore(totalScore);
+
+                    // Logic for IsOver:
+                    // If status is NOT ACCEPTED and the policy stops on failure, we stop here and mark IsOver=true.
+                    // Otherwise we check if it's the last case. If so, IsOver=true.
+                    if (status != ST_ACCEPTED && stopOnFailure) {
                         rm.setIsOver(true);
+                        out.accept(rm);
+                        return; // Stop judging
                     } else {
-                        rm.setIsOver(false);
+                        rm.setIsOver(i == cases.size() - 1);
+                        out.accept(rm);
                     }
-                    out.accept(rm);
+                }
+            } finally {
+                // Let queued cases skip and wait for running ones before the work dir is removed
+                firstFailure.set(-1);
+                for (Future<ResultMessage> f : pending) {
+                    try { f.get(); } catch (Exception ignored) {}
                 }
             }
 
@@ -202,10 +242,84 @@ public class JudgeExecutor {
             ResultMessage rm = systemError(sm, "system_error: " + e.getMessage());
             out.accept(rm);
         } finally {
-            cleanup(probRoot, work);
+            if (lease != null) lease.close();
+            deleteTree(work);
         }
     }
 
+    private ResultMessage runCase(TestCaseInfo tc, long tcId, Path tcDir, Path work, Path exe,
+                                  long timeLimitMs, long memoryLimitMb, OutputComparator cmp,
+                                  Path checker, long checkerTimeLimitMs, long checkerMemoryLimitMb,
+                                  int cpu) throws Exception {
+        Path in = tcDir.resolve(tc.getName() + ".in");
+        Path exp = tcDir.resolve(tc.getName() + ".out");
+        Path userOut = work.resolve("user_" + tcId + ".out");
+
+        SandboxRunner.RunResult rr = sandbox.run(exe, in, userOut, timeLimitMs, memoryLimitMb, cpu);
+
+        String inputStr = safeRead(in, 4096);
+        String expStr = Files.exists(exp) ? safeRead(exp, 4096) : "";
+        String usrStr = Files.exists(userOut) ? safeRead(userOut, 4096) : "";
+
+        long status;
+        String msg;
+        Long checkerMs = null;
+
+        if (rr.tle) {
+            status = ST_TIME_LIMIT;
+            msg = "time_limit_exceeded";
+        } else if (rr.mle) {
+            status = ST_MEMORY_LIMIT;
+            msg = "memory_limit_exceeded";
+        } else if (!rr.ok) {
+            status = ST_RUNTIME_ERROR;
+            msg = "runtime_error(exit=" + rr.exitCode + ")";
+        } else if (checker != null) {
+            // testlib convention: checker <input> <output> <answer>, 0 = ok, 1 = wa, 2 = pe
+            Path checkerOut = work.resolve("checker_" + tcId + ".out");
+            SandboxRunner.RunResult cr = sandbox.runChecker(checker,
+                    List.of(in.toAbsolutePath().toString(), userOut.toAbsolutePath().toString(), exp.toAbsolutePath().toString()),
+                    in, checkerOut, checkerTimeLimitMs, checkerMemoryLimitMb, cpu);
+            checkerMs = cr.reportedTimeMs();
+            String comment = trunc(cr.detail, 1000).trim();
+            if (cr.tle || cr.mle) {
+                status = ST_SYSTEM_ERROR;
+                msg = "checker_failed: " + (cr.tle ? "time_limit_exceeded" : "memory_limit_exceeded");
+            } else if (cr.exitCode == 0) {
+                status = ST_ACCEPTED;
+                msg = comment.isEmpty() ? "accepted" : comment;
+            } else if (cr.exitCode == 1 || cr.exitCode == 2) {
+                status = ST_WRONG_ANSWER;
+                msg = comment.isEmpty() ? "wrong_answer" : comment;
+            } else {
+                status = ST_SYSTEM_ERROR;
+                msg = "checker_failed(exit=" + cr.exitCode + "): " + comment;
+            }
+        } else {
+            boolean same = cmp.same(exp, userOut);
+            if (same) {
+                status = ST_ACCEPTED;
+                msg = "accepted";
+            } else {
+                status = ST_WRONG_ANSWER;
+                msg = "wrong_answer";
+            }
+        }
+
+        ResultMessage rm = new ResultMessage();
+        rm.setTestCaseId(tcId);
+        rm.setTimeUsed(rr.reportedTimeMs());
+        rm.setMemoryUsed(rr.reportedMemoryKb());
+        rm.setCheckerTimeUsed(checkerMs);
+        rm.setStatus(status);
+        rm.setInput(inputStr);
+        rm.setExpectedOutput(expStr);
+        rm.setUserOutput(usrStr);
+        rm.setMessage(msg);
+        rm.setCorrect(true);
+        return rm;
+    }
+
     public static ResultMessage systemError(SubmissionMessage sm, String msg) {
         ResultMessage rm = new ResultMessage();
         rm.setSubmissionId(sm.submissionId);
@@ -227,11 +341,14 @@ public class JudgeExecutor {
         return x.equals("cpp") || x.equals("c++");
     }
 
-    private static CompileResult compileCpp(Path code, Path exe, long timeoutMs) throws Exception {
-        List<String> cmd = Arrays.asList(
-                "bash", "-lc",
-                "g++ -O2 -std=c++17 -pipe " + shell(code) + " -o " + shell(exe) + " 2>&1"
-        );
+    private static CompileCache.Result compileCpp(Path code, Path exe, List<String> flags, long timeoutMs) throws Exception {
+        // Exec g++ directly, a login shell would source the profiles on every compile
+        List<String> cmd = new ArrayList<>();
+        cmd.add(CPP_COMPILER);
+        cmd.addAll(flags);
+        cmd.add(code.toAbsolutePath().toString());
+        cmd.add("-o");
+        cmd.add(exe.toAbsolutePath().toString());
         ProcessBuilder pb = new ProcessBuilder(cmd);
         pb.redirectErrorStream(true);
         Process p = pb.start();
@@ -246,15 +363,12 @@ public class JudgeExecutor {
         boolean ok = p.waitFor(timeoutMs, java.util.concurrent.TimeUnit.MILLISECONDS);
         if (!ok) {
             p.destroyForcibly();
-            return new CompileResult(false, "compile_timeout");
+            return new CompileCache.Result(false, CompileCache.COMPILE_TIMEOUT, -1);
         }
         int ec = p.exitValue();
-        return new CompileResult(ec == 0, baos.toString(StandardCharsets.UTF_8));
-    }
-
-    private static String stripExt(String n) {
-        int i = n.lastIndexOf('.');
-        return (i < 0) ? n : n.substring(0, i);
+        // Keep the log independent of the work dir, it is cached and shown to other submissions
+        String log = baos.toString(StandardCharsets.UTF_8).replace(code.toAbsolutePath().toString(), code.getFileName().toString());
+        return new CompileCache.Result(ec == 0, log, ec);
     }
 
     private static String safeRead(Path p, int max) {
@@ -272,11 +386,6 @@ public class JudgeExecutor {
         return s.substring(0, max);
     }
 
-    private static void cleanup(Path a, Path b) {
-        deleteTree(a);
-        deleteTree(b);
-    }
-
     private static void deleteTree(Path p) {
         if (p == null) return;
         try {
@@ -287,14 +396,4 @@ public class JudgeExecutor {
         } catch (Exception ignored) {
         }
     }
-
-    private static String shell(Path p) {
-        return "'" + p.toAbsolutePath().toString().replace("'", "'\"'\"'") + "'";
-    }
-
-    private static class CompileResult {
-        final boolean ok;
-        final String log;
-        CompileResult(boolean ok, String log) { this.ok = ok; this.log = log; }
-    }
 }
@@ -0,0 +1,153 @@
+package com.edu.oj.executor;
+
+import com.edu.oj.message.Priority;
+
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Weighted scheduler over the priority lanes of the worker.
+ * <p>
+ * Each lane has its own FIFO queue. Free workers pick a lane by smooth weighted
+ * round-robin over the lanes that have work, so with weights normal=3, rejudge=1 a
+ * rejudge backlog gets 25% of the picks while user submissions keep the rest, and a
+ * lane alone gets every worker.
+ */
+public class LaneScheduler {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<Priority, Lane> lanes = new EnumMap<>(Priority.class);
+
+    public LaneScheduler(Map<Priority, Integer> weights) {
+        for (Priority p : Priority.values()) {
+            lanes.put(p, new Lane(Math.max(1, weights.getOrDefault(p, 1))));
+        }
+    }
+
+    /**
+     * Parses "normal=3,rejudge=1"; lanes not listed get weight 1, unknown lanes are ignored.
+     */
+    public static Map<Priority, Integer> parseWeights(String spec) {
+        Map<Priority, Integer> w = new EnumMap<>(Priority.class);
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) continue;
+            Priority lane = Arrays.stream(Priority.values())
+                    .filter(p -> p.name().equalsIgnoreCase(kv[0].trim()))
+                    .findFirst().orElse(null);
+            if (lane != null) w.put(lane, Integer.parseInt(kv[1].trim()));
+        }
+        return w;
+    }
+
+    /**
+     * @param createdAtMs when the submission was sent (Kafka record timestamp), for wait time
+     */
+    public void submit(Priority lane, long createdAtMs, Runnable task) {
+        lock.lock();
+        try {
+            lanes.get(lane).queue.addLast(new Task(createdAtMs, task));
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Blocks until some lane has work and returns the next task by weight. */
+    public Runnable take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                Lane best = null;
+                int total = 0;
+                for (Lane l : lanes.values()) {
+                    if (l.queue.isEmpty()) continue;
+                    l.current += l.weight;
+                    total += l.weight;
+                    if (best == null || l.current > best.current) best = l;
+                }
+                if (best != null) {
+                    best.current -= total;
+                    Task t = best.queue.pollFirst();
+                    best.recordWait(System.currentTimeMillis() - t.createdAtMs);
+                    return t.task;
+                }
+                notEmpty.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int depth(Priority lane) {
+        lock.lock();
+        try {
+            return lanes.get(lane).queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait time statistics per lane since the previous call, then resets them.
+     */
+    public Map<Priority, WaitStats> drainWaitStats() {
+        lock.lock();
+        try {
+            Map<Priority, WaitStats> out = new EnumMap<>(Priority.class);
+            lanes.forEach((p, l) -> {
+                out.put(p, new WaitStats(l.started, l.started == 0 ? 0 : l.waitTotalMs / l.started, l.waitMaxMs));
+                l.started = 0;
+                l.waitTotalMs = 0;
+                l.waitMaxMs = 0;
+            });
+            return out;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static final class WaitStats {
+        public final long started;
+        public final long avgWaitMs;
+        public final long maxWaitMs;
+
+        WaitStats(long started, long avgWaitMs, long maxWaitMs) {
+            this.started = started;
+            this.avgWaitMs = avgWaitMs;
+            this.maxWaitMs = maxWaitMs;
+        }
+    }
+
+    private static final class Lane {
+        final int weight;
+        final ArrayDeque<Task> queue = new ArrayDeque<>();
+        int current;
+        long started;
+        long waitTotalMs;
+        long waitMaxMs;
+
+        Lane(int weight) {
+            this.weight = weight;
+        }
+
+        void recordWait(long ms) {
+            ms = Math.max(0, ms);
+            started++;
+            waitTotalMs += ms;
+            waitMaxMs = Math.max(waitMaxMs, ms);
+        }
+    }
+
+    private static final class Task {
+        final long createdAtMs;
+        final Runnable task;
+
+        Task(long createdAtMs, Runnable task) {
+            this.createdAtMs = createdAtMs;
+            this.task = task;
+        }
+    }
+}
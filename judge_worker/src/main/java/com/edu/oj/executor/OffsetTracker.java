@@ -0,0 +1,117 @@
+package com.edu.oj.executor;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-partition offset bookkeeping for out-of-order completion.
+ * <p>
+ * Records of a partition may finish in any order; the committable offset of a partition
+ * is the lowest offset still pending (or one past the highest seen), so a commit never
+ * skips a submission that has not been judged yet.
+ */
+public class OffsetTracker {
+
+    private final Map<TopicPartition, Partition> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a polled record, before it is handed to a worker.
+     * @return the partition state the worker reports to; it stays bound to this assignment
+     *         even if the partition is revoked and assigned again
+     */
+    public Partition add(TopicPartition tp, long offset) {
+        Partition p = partitions.computeIfAbsent(tp, k -> new Partition());
+        p.add(offset);
+        return p;
+    }
+
+    /** Offsets that advanced since the last call, ready for commitAsync/commitSync. */
+    public Map<TopicPartition, OffsetAndMetadata> committable() {
+        return committable(partitions.keySet(), false);
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> committable(Collection<TopicPartition> tps, boolean force) {
+        Map<TopicPartition, OffsetAndMetadata> out = new HashMap<>();
+        for (TopicPartition tp : tps) {
+            Partition p = partitions.get(tp);
+            if (p == null) continue;
+            long next = p.takeCommittable(force);
+            if (next >= 0) out.put(tp, new OffsetAndMetadata(next));
+        }
+        return out;
+    }
+
+    /**
+     * Stops the given partitions: queued records are skipped, running ones are waited for.
+     * @return the final offsets of these partitions to commit before giving them up
+     */
+    public Map<TopicPartition, OffsetAndMetadata> revoke(Collection<TopicPartition> tps) throws InterruptedException {
+        for (TopicPartition tp : tps) {
+            Partition p = partitions.get(tp);
+            if (p != null) p.revokeAndAwait();
+        }
+        // Forced: an earlier commitAsync of the same offset may have failed
+        Map<TopicPartition, OffsetAndMetadata> out = committable(tps, true);
+        tps.forEach(partitions::remove);
+        return out;
+    }
+
+    public static final class Partition {
+        private final TreeSet<Long> pending = new TreeSet<>();
+        private long highest = -1;
+        private long committed = -1;
+        private int running = 0;
+        private boolean revoked = false;
+
+        private synchronized void add(long offset) {
+            pending.add(offset);
+            highest = Math.max(highest, offset);
+        }
+
+        /**
+         * Called by a worker right before judging.
+         * @return false if the partition was revoked meanwhile, the record must be skipped
+         */
+        public synchronized boolean start() {
+            if (revoked) return false;
+            running++;
+            return true;
+        }
+
+        /** Called by a worker after a record was judged, or skipped after {@link #start}. */
+        public synchronized void complete(long offset, boolean started) {
+            if (revoked && !started) return; // skipped, must be redelivered to the new owner
+            pending.remove(offset);
+            if (started) {
+                running--;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Called by a worker instead of {@link #complete} when it was interrupted (shutdown)
+         * before the record's results were delivered. The offset stays pending, so commits
+         * stop before it and the record is judged again by the next owner.
+         */
+        public synchronized void fail(long offset) {
+            running--;
+            notifyAll();
+        }
+
+        private synchronized void revokeAndAwait() throws InterruptedException {
+            revoked = true;
+            while (running > 0) wait();
+        }
+
+        // Next offset to commit if it moved since the last commit, -1 otherwise
+        private synchronized long takeCommittable(boolean force) {
+            long next = pending.isEmpty() ? highest + 1 : pending.first();
+            if (next <= 0 || (next <= committed && !force)) return -1;
+            committed = next;
+            return next;
+        }
+    }
+}
@@ -1,40 +1,311 @@
 package com.edu.oj.executor;
 
+import com.edu.oj.entity.ProblemConfig;
+
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.util.*;
+import java.util.Arrays;
+import java.util.regex.Pattern;
 
+/**
+ * Streaming comparison of expected and user output.
+ * <p>
+ * Both files are read through small per-thread buffers and compared in lockstep, the
+ * comparison stops at the first difference. Memory does not depend on the output size
+ * (FLOAT mode keeps the current pair of tokens, each at most {@link #MAX_TOKEN} bytes;
+ * longer tokens are not numbers and are compared as byte streams).
+ */
 public class OutputComparator {
 
+    public enum Mode {
+        /** Byte-for-byte equal. */
+        EXACT,
+        /** Trailing whitespace of every line and trailing blank lines are ignored (default). */
+        LINE,
+        /** Whitespace-separated tokens must be equal, like {@code diff -bw} / Python's split(). */
+        TOKEN,
+        /**
+         * TOKEN, but decimal tokens ({@code [+-]digits[.digits][e[+-]digits]}) may differ by the
+         * absolute or relative epsilon; other tokens must be equal.
+         */
+        FLOAT
+    }
+
+    public static final double DEFAULT_EPS = 1e-6;
+
+    private static final Pattern DECIMAL = Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+
+    private static final int BUF_SIZE = 64 * 1024;
+    /** Longest token FLOAT mode buffers, far above any decimal a checker would accept. */
+    static final int MAX_TOKEN = 1024 * 1024;
+    private static final ThreadLocal<ByteBuffer[]> BUFFERS = ThreadLocal.withInitial(() ->
+            new ByteBuffer[]{ByteBuffer.allocateDirect(BUF_SIZE), ByteBuffer.allocateDirect(BUF_SIZE)});
+
+    private final Mode mode;
+    private final double absEps;
+    private final double relEps;
+
+    public OutputComparator(Mode mode, double absEps, double relEps) {
+        this.mode = mode;
+        this.absEps = absEps;
+        this.relEps = relEps;
+    }
+
+    /**
+     * Comparator configured by compare_mode / float_abs_eps / float_rel_eps of config.yml.
+     */
+    public static OutputComparator forConfig(ProblemConfig pc) {
+        Mode mode = Mode.LINE;
+        if (pc.getCompare_mode() != null && !pc.getCompare_mode().isBlank()) {
+            mode = Mode.valueOf(pc.getCompare_mode().trim().toUpperCase());
+        }
+        double abs = pc.getFloat_abs_eps() == null ? DEFAULT_EPS : pc.getFloat_abs_eps();
+        double rel = pc.getFloat_rel_eps() == null ? DEFAULT_EPS : pc.getFloat_rel_eps();
+        return new OutputComparator(mode, abs, rel);
+    }
+
     public static boolean sameOutput(Path expected, Path actual) {
-        try {
-            List<String> a = normalize(readAllLinesSafe(expected));
-            List<String> b = normalize(readAllLinesSafe(actual));
-            return a.equals(b);
+        return new OutputComparator(Mode.LINE, 0, 0).same(expected, actual);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean same(Path expected, Path actual) {
+        ByteBuffer[] bufs = BUFFERS.get();
+        try (Source a = new Source(expected, bufs[0]); Source b = new Source(actual, bufs[1])) {
+            switch (mode) {
+                case EXACT: return exact(a, b);
+                case TOKEN: return tokens(a, b);
+                case FLOAT: return floats(a, b);
+                default: return lines(a, b);
+            }
         } catch (Exception e) {
             return false;
         }
     }
 
-    private static List<String> readAllLinesSafe(Path p) throws IOException {
-        if (p == null || !Files.exists(p)) return Collections.emptyList();
-        return Files.readAllLines(p, StandardCharsets.UTF_8);
+    private static boolean exact(Source a, Source b) throws IOException {
+        while (true) {
+            int x = a.next();
+            if (x != b.next()) return false;
+            if (x < 0) return true;
+        }
+    }
+
+    private static boolean lines(Source a, Source b) throws IOException {
+        while (true) {
+            int x = a.peek();
+            int y = b.peek();
+            if (x < 0 && y < 0) return true;
+            if (x < 0) return restIsBlank(b);
+            if (y < 0) return restIsBlank(a);
+            if (x == '\n' && y == '\n') {
+                a.next();
+                b.next();
+                continue;
+            }
+            boolean wx = isSpace(x);
+            boolean wy = isSpace(y);
+            if (wx && wy) {
+                // Same whitespace inside a line must match exactly, different runs are
+                // only fine when both are trailing
+                while (isSpace(a.peek()) && a.peek() == b.peek()) {
+                    a.next();
+                    b.next();
+                }
+                if (!isSpace(a.peek()) && !isSpace(b.peek())) continue;
+                skipSpaces(a);
+                skipSpaces(b);
+                if (!atEol(a.peek()) || !atEol(b.peek())) return false;
+            } else if (wx || wy) {
+                skipSpaces(wx ? a : b);
+                if (!atEol(a.peek()) || !atEol(b.peek())) return false;
+            } else if (x == '\n' || y == '\n') {
+                return false;
+            } else {
+                if (x != y) return false;
+                a.next();
+                b.next();
+            }
+        }
+    }
+
+    private static boolean tokens(Source a, Source b) throws IOException {
+        while (true) {
+            skipBlank(a);
+            skipBlank(b);
+            int x = a.peek();
+            int y = b.peek();
+            if (x < 0 || y < 0) return x < 0 && y < 0;
+            while (true) {
+                x = a.peek();
+                y = b.peek();
+                boolean endX = x < 0 || isBlank(x);
+                boolean endY = y < 0 || isBlank(y);
+                if (endX || endY) {
+                    if (endX != endY) return false;
+                    break;
+                }
+                if (x != y) return false;
+                a.next();
+                b.next();
+            }
+        }
+    }
+
+    private boolean floats(Source a, Source b) throws IOException {
+        Token ta = new Token();
+        Token tb = new Token();
+        while (true) {
+            boolean hasA = ta.read(a);
+            boolean hasB = tb.read(b);
+            if (!hasA || !hasB) return !hasA && !hasB;
+            if (ta.full || tb.full) {
+                // Too long to be a number, the rest must match byte for byte
+                if (!ta.full || !tb.full || !ta.sameBytes(tb) || !restOfTokenEqual(a, b)) return false;
+                continue;
+            }
+            if (ta.sameBytes(tb)) continue;
+            // Only plain decimals are numbers; "1.5f", hex floats, NaN and Infinity that
+            // Double.parseDouble would accept are compared as strings (and differ here)
+            String sa = ta.toString();
+            String sb = tb.toString();
+            if (!DECIMAL.matcher(sa).matches() || !DECIMAL.matcher(sb).matches()) return false;
+            double e = Double.parseDouble(sa);
+            double u = Double.parseDouble(sb);
+            if (Double.isInfinite(e) || Double.isInfinite(u)) return false;
+            double diff = Math.abs(e - u);
+            if (!(diff <= absEps || diff <= relEps * Math.abs(e))) return false;
+        }
+    }
+
+    private static boolean restOfTokenEqual(Source a, Source b) throws IOException {
+        while (true) {
+            int x = a.peek();
+            int y = b.peek();
+            boolean endX = x < 0 || isBlank(x);
+            boolean endY = y < 0 || isBlank(y);
+            if (endX || endY) return endX == endY;
+            if (x != y) return false;
+            a.next();
+            b.next();
+        }
     }
 
-    private static List<String> normalize(List<String> in) {
-        List<String> out = new ArrayList<>();
-        int last = in.size() - 1;
-        while (last >= 0 && in.get(last).trim().isEmpty()) last--;
-        for (int i = 0; i <= last; i++) {
-            out.add(rtrim(in.get(i)));
+    private static boolean restIsBlank(Source s) throws IOException {
+        int c;
+        while ((c = s.next()) >= 0) {
+            if (!isBlank(c)) return false;
         }
-        return out;
+        return true;
     }
 
-    private static String rtrim(String s) {
-        int i = s.length() - 1;
-        while (i >= 0 && Character.isWhitespace(s.charAt(i))) i--;
-        return s.substring(0, i + 1);
+    private static void skipSpaces(Source s) throws IOException {
+        while (isSpace(s.peek())) s.next();
+    }
+
+    private static void skipBlank(Source s) throws IOException {
+        while (isBlank(s.peek())) s.next();
+    }
+
+    private static boolean atEol(int c) {
+        return c < 0 || c == '\n';
+    }
+
+    // Whitespace inside a line; '\r' is here so that CRLF output equals LF output
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+
+    private static boolean isBlank(int c) {
+        return c == '\n' || isSpace(c);
+    }
+
+    /**
+     * Reusable buffer for one whitespace-separated token. Stops at {@link #MAX_TOKEN} bytes
+     * and sets {@code full}, the rest of the token is left in the source.
+     */
+    private static final class Token {
+        private byte[] buf = new byte[64];
+        private int len;
+        boolean full;
+
+        boolean read(Source s) throws IOException {
+            skipBlank(s);
+            len = 0;
+            full = false;
+            int c;
+            while ((c = s.peek()) >= 0 && !isBlank(c)) {
+                if (len == MAX_TOKEN) {
+                    full = true;
+                    break;
+                }
+                if (len == buf.length) {
+                    byte[] grown = new byte[buf.length * 2];
+                    System.arraycopy(buf, 0, grown, 0, len);
+                    buf = grown;
+                }
+                buf[len++] = (byte) s.next();
+            }
+            return len > 0;
+        }
+
+        boolean sameBytes(Token o) {
+            return Arrays.equals(buf, 0, len, o.buf, 0, o.len);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buf, 0, len, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /** Byte cursor over a file; a missing file reads as empty. */
+    private static final class Source implements AutoCloseable {
+        private final FileChannel ch;
+        private final ByteBuffer buf;
+        private boolean eof;
+
+        Source(Path p, ByteBuffer buf) throws IOException {
+            this.ch = p != null && Files.exists(p) ? FileChannel.open(p, StandardOpenOption.READ) : null;
+            this.buf = buf;
+            buf.clear().flip();
+            this.eof = ch == null;
+        }
+
+        int peek() throws IOException {
+            if (!buf.hasRemaining() && !fill()) return -1;
+            return buf.get(buf.position()) & 0xff;
+        }
+
+        int next() throws IOException {
+            if (!buf.hasRemaining() && !fill()) return -1;
+            return buf.get() & 0xff;
+        }
+
+        private boolean fill() throws IOException {
+            if (eof) return false;
+            buf.clear();
+            int n;
+            do {
+                n = ch.read(buf);
+            } while (n == 0);
+            buf.flip();
+            if (n < 0) {
+                eof = true;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (ch != null) ch.close();
+        }
     }
 }
@@ -0,0 +1,125 @@
+package com.edu.oj.executor;
+
+import com.edu.oj.manager.ProblemDataCache;
+import com.edu.oj.message.ProblemUpdatedMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Loads problem data into the local cache before submissions need it.
+ * <p>
+ * At startup the configured problems (judge.prefetch-problem-ids) are loaded, afterwards
+ * every problem announced on the problem-updated topic. Every worker must see every
+ * event, so the topic is read without a consumer group: all partitions are assigned
+ * and reading starts at the end. Loads go through {@link ProblemDataCache}, a submission
+ * arriving during a prefetch waits for it instead of loading again. Failures are only
+ * logged, the data is then loaded by the first judgment as before.
+ */
+@Slf4j
+public class ProblemPrefetcher implements AutoCloseable {
+
+    private static final long TOPIC_RETRY_MS = 10_000;
+
+    private final ProblemDataCache cache;
+    private final Properties consumerProps;
+    private final String topic;
+    private final ObjectMapper om;
+    private final ExecutorService pool;
+    // queued, not yet started; a new event during a running load queues it again
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private final Thread listener;
+    private volatile KafkaConsumer<String, String> consumer;
+    private volatile boolean closed = false;
+
+    /**
+     * @param consumerProps bootstrap servers and deserializers, no group id
+     */
+    public ProblemPrefetcher(ProblemDataCache cache, Properties consumerProps, String topic, ObjectMapper om, int threads) {
+        this.cache = cache;
+        this.consumerProps = consumerProps;
+        this.topic = topic;
+        this.om = om;
+        this.pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "problem-prefetch");
+            t.setDaemon(true);
+            return t;
+        });
+        this.listener = new Thread(this::listen, "problem-events");
+        this.listener.setDaemon(true);
+    }
+
+    public void start(List<Long> problemIds) {
+        problemIds.forEach(this::prefetch);
+        listener.start();
+    }
+
+    public void prefetch(Long problemId) {
+        if (closed || !queued.add(problemId)) return;
+        try {
+            pool.execute(() -> {
+                queued.remove(problemId);
+                long start = System.nanoTime();
+                try (ProblemDataCache.Lease lease = cache.acquire(problemId)) {
+                    log.info("Problem {} prefetched (etag={}) in {} ms",
+                            problemId, lease.getETag(), (System.nanoTime() - start) / 1_000_000L);
+                } catch (Exception e) {
+                    log.warn("Failed to prefetch problem {}", problemId, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(problemId);
+        }
+    }
+
+    private void listen() {
+        try (KafkaConsumer<String, String> c = new KafkaConsumer<>(consumerProps)) {
+            consumer = c;
+            List<TopicPartition> tps = new ArrayList<>();
+            while (!closed && tps.isEmpty()) {
+                List<PartitionInfo> infos = c.partitionsFor(topic);
+                if (infos != null) {
+                    for (PartitionInfo pi : infos) tps.add(new TopicPartition(pi.topic(), pi.partition()));
+                }
+                // the topic appears with the first problem upload
+                if (tps.isEmpty()) Thread.sleep(TOPIC_RETRY_MS);
+            }
+            c.assign(tps);
+            c.seekToEnd(tps);
+            log.info("Listening for problem updates on {}", tps);
+
+            while (!closed) {
+                for (ConsumerRecord<String, String> r : c.poll(Duration.ofSeconds(1))) {
+                    try {
+                        ProblemUpdatedMessage m = om.readValue(r.value(), ProblemUpdatedMessage.class);
+                        log.info("Problem {} updated (version={}), prefetching", m.problemId, m.version);
+                        prefetch(m.problemId);
+                    } catch (Exception e) {
+                        log.warn("Dropped malformed problem update at {}-{}@{}", r.topic(), r.partition(), r.offset(), e);
+                    }
+                }
+            }
+        } catch (WakeupException | InterruptedException e) {
+            // closing
+        } catch (Exception e) {
+            log.error("Problem update listener stopped", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        KafkaConsumer<String, String> c = consumer;
+        if (c != null) c.wakeup();
+        listener.interrupt();
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,201 @@
+package com.edu.oj.executor;
+
+import com.edu.oj.config.JudgeProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Supervises all running sandboxes of the worker at once.
+ * <p>
+ * Exit is observed through {@link Process#onExit()}, deadlines are timer tasks on a
+ * single scheduler thread, and one periodic task samples VmRSS of every watched
+ * process that has a memory limit and the cgroup CPU time of every process that has a
+ * CPU limit. The judge thread just blocks in {@link Watch#await()}
+ * instead of waking up every 10 ms.
+ */
+@Component
+@Slf4j
+public class ProcessMonitor {
+
+    private static final byte[] VM_RSS = "VmRSS:".getBytes();
+    private static final byte[] USAGE_USEC = "usage_usec".getBytes();
+
+    private final ScheduledExecutorService timer;
+    private final Set<Watch> sampled = ConcurrentHashMap.newKeySet();
+    // only touched by the timer thread
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(4096);
+
+    public ProcessMonitor(JudgeProperties props) {
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sandbox-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = props.getMonitorIntervalMs();
+        timer.scheduleWithFixedDelay(this::sampleAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts supervising a process.
+     * @param timeoutMs wall clock after which the process is killed
+     * @param memoryLimitKb VmRSS limit, 0 disables sampling
+     */
+    public Watch watch(Process p, long startNs, long timeoutMs, long memoryLimitKb) {
+        return watch(p, startNs, timeoutMs, memoryLimitKb, null, 0);
+    }
+
+    /**
+     * @param cpuStat cpu.stat of the run's cgroup, null disables the CPU limit
+     * @param cpuLimitUsec the process is killed once usage_usec of cpuStat exceeds this
+     */
+    public Watch watch(Process p, long startNs, long timeoutMs, long memoryLimitKb, Path cpuStat, long cpuLimitUsec) {
+        Watch w = new Watch(p, startNs, memoryLimitKb, cpuLimitUsec);
+        try {
+            if (memoryLimitKb > 0) {
+                w.status = FileChannel.open(Paths.get("/proc", String.valueOf(p.pid()), "status"), StandardOpenOption.READ);
+            }
+            if (cpuStat != null) {
+                w.cpuStat = FileChannel.open(cpuStat, StandardOpenOption.READ);
+            }
+            if (w.status != null || w.cpuStat != null) sampled.add(w);
+        } catch (IOException e) {
+            // already gone, onExit below completes the watch
+        }
+        w.deadline = timer.schedule(() -> {
+            if (p.isAlive()) {
+                w.timedOut = true;
+                p.destroyForcibly();
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        p.onExit().whenComplete((ph, ex) -> {
+            w.endNs = System.nanoTime();
+            w.deadline.cancel(false);
+            sampled.remove(w);
+            closeQuietly(w);
+            w.done.complete(null);
+        });
+        return w;
+    }
+
+    private void sampleAll() {
+        for (Watch w : sampled) {
+            if (w.status != null) {
+                long rss = readValue(w.status, VM_RSS);
+                if (rss > w.maxRssKb) w.maxRssKb = rss;
+                if (rss > w.limitKb && w.process.isAlive()) {
+                    w.memoryExceeded = true;
+                    w.process.destroyForcibly();
+                    sampled.remove(w);
+                    continue;
+                }
+            }
+            if (w.cpuStat != null) {
+                long usec = readValue(w.cpuStat, USAGE_USEC);
+                if (usec > w.cpuLimitUsec && w.process.isAlive()) {
+                    w.cpuExceeded = true;
+                    w.process.destroyForcibly();
+                    sampled.remove(w);
+                }
+            }
+        }
+    }
+
+    // Re-reads the already open file (/proc/<pid>/status, cpu.stat) from offset 0 and scans
+    // the bytes in place, no String or array is created per sample.
+    private long readValue(FileChannel ch, byte[] key) {
+        try {
+            buf.clear();
+            int n = ch.read(buf, 0);
+            if (n <= 0) return 0;
+            int i = indexOf(buf, n, key);
+            if (i < 0) return 0;
+            i += key.length;
+            while (i < n && (buf.get(i) == ' ' || buf.get(i) == '\t')) i++;
+            long v = 0;
+            while (i < n) {
+                byte b = buf.get(i++);
+                if (b < '0' || b > '9') break;
+                v = v * 10 + (b - '0');
+            }
+            return v;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private static int indexOf(ByteBuffer b, int n, byte[] key) {
+        outer:
+        for (int i = 0; i + key.length <= n; i++) {
+            for (int j = 0; j < key.length; j++) {
+                if (b.get(i + j) != key[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static void closeQuietly(Watch w) {
+        if (w.status != null) {
+            try { w.status.close(); } catch (IOException ignored) {}
+        }
+        if (w.cpuStat != null) {
+            try { w.cpuStat.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    public static final class Watch {
+        private final Process process;
+        private final long startNs;
+        private final long limitKb;
+        private final long cpuLimitUsec;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private FileChannel status;
+        private FileChannel cpuStat;
+        private ScheduledFuture<?> deadline;
+        private volatile long endNs;
+        private volatile long maxRssKb;
+        private volatile boolean timedOut;
+        private volatile boolean memoryExceeded;
+        private volatile boolean cpuExceeded;
+
+        private Watch(Process process, long startNs, long limitKb, long cpuLimitUsec) {
+            this.process = process;
+            this.startNs = startNs;
+            this.limitKb = limitKb;
+            this.cpuLimitUsec = cpuLimitUsec;
+        }
+
+        /** Blocks until the process has exited (normally or killed by the monitor). */
+        public void await() throws InterruptedException {
+            try {
+                done.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                throw e;
+            }
+        }
+
+        public long elapsedMs() { return (endNs - startNs) / 1_000_000L; }
+        public long maxRssKb() { return maxRssKb; }
+        public boolean timedOut() { return timedOut; }
+        public boolean memoryExceeded() { return memoryExceeded; }
+        public boolean cpuExceeded() { return cpuExceeded; }
+    }
+}
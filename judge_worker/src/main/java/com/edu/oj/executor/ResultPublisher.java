@@ -0,0 +1,159 @@
+package com.edu.oj.executor;
+
+import com.edu.oj.message.ResultMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Asynchronous result publishing.
+ * <p>
+ * Results are handed to the producer without waiting, so the producer can batch them
+ * (linger.ms / batch.size). At most {@code maxInFlight} records are unacknowledged at a
+ * time, further publishes block the judge thread. Retries are left to the idempotent
+ * producer, bounded by delivery.timeout.ms, which keeps the results of a submission in
+ * order. A record that still fails marks its submission as undelivered; {@link #finish}
+ * then sends all results of that submission again, in order, with exponential backoff, and
+ * only reports failure once those attempts are used up.
+ */
+@Slf4j
+public class ResultPublisher implements AutoCloseable {
+
+    private static final long MAX_RETRY_BACKOFF_MS = 30_000;
+
+    private final Producer<String, String> producer;
+    private final String topic;
+    private final ObjectMapper om;
+    private final Semaphore inFlight;
+    private final int retries;
+    private final long retryBackoffMs;
+    // keys of submissions with a record that could not be delivered
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+    // results of each unfinished submission in publish order, resent when one of them failed
+    private final Map<String, List<String>> sent = new ConcurrentHashMap<>();
+
+    /**
+     * @param retries times {@link #finish} resends a submission whose results failed
+     * @param retryBackoffMs wait before the first resend, doubled for each further one
+     */
+    public ResultPublisher(Producer<String, String> producer, String topic, ObjectMapper om, int maxInFlight,
+                           int retries, long retryBackoffMs) {
+        this.producer = producer;
+        this.topic = topic;
+        this.om = om;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.retries = retries;
+        this.retryBackoffMs = retryBackoffMs;
+    }
+
+    /**
+     * Queues a result keyed by submission id.
+     */
+    public void publish(Long submissionId, ResultMessage rm) {
+        String key = String.valueOf(submissionId);
+        String value;
+        try {
+            value = om.writeValueAsString(rm);
+        } catch (Exception e) {
+            log.error("Failed to serialize result of submission {} case {}", submissionId, rm.getTestCaseId(), e);
+            failed.add(key);
+            return;
+        }
+        sent.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>())).add(value);
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while publishing result of submission {} case {}", submissionId, rm.getTestCaseId());
+            failed.add(key);
+            return;
+        }
+        try {
+            producer.send(new ProducerRecord<>(topic, key, value), (meta, ex) -> {
+                inFlight.release();
+                if (ex != null) {
+                    failed.add(key);
+                    log.error("Failed to publish result of submission {} case {}", key, rm.getTestCaseId(), ex);
+                }
+            });
+        } catch (Exception ex) {
+            inFlight.release();
+            failed.add(key);
+            log.error("Failed to publish result of submission {} case {}", key, rm.getTestCaseId(), ex);
+        }
+    }
+
+    /**
+     * Waits until every result of the submission is acknowledged or failed, and resends
+     * them all when one failed.
+     * @return false if they were still not delivered after the retries
+     */
+    public boolean finish(Long submissionId) {
+        String key = String.valueOf(submissionId);
+        boolean flushed = flush();
+        List<String> values = sent.remove(key);
+        if (!failed.remove(key) && flushed) return true;
+        if (values == null) return false; // nothing serializable to resend
+
+        long backoff = retryBackoffMs;
+        for (int attempt = 1; attempt <= retries; attempt++) {
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MS);
+            if (resend(key, values)) {
+                log.info("Results of submission {} delivered on retry {}", key, attempt);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Sends the results again in order and waits for all acknowledgements
+    private boolean resend(String key, List<String> values) {
+        List<Future<RecordMetadata>> acks = new ArrayList<>();
+        try {
+            synchronized (values) {
+                for (String v : values) acks.add(producer.send(new ProducerRecord<>(topic, key, v)));
+            }
+            for (Future<RecordMetadata> ack : acks) ack.get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            log.warn("Retry of results of submission {} failed", key, e);
+            return false;
+        }
+    }
+
+    /** Blocks until everything handed to the producer so far is acknowledged or failed. */
+    public boolean flush() {
+        try {
+            producer.flush();
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to flush results", e);
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
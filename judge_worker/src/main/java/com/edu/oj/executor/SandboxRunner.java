@@ -1,40 +1,93 @@
 package com.edu.oj.executor;
 
+import com.edu.oj.config.JudgeProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
+@Component
+@Slf4j
 public class SandboxRunner {
 
-    public static RunResult run(Path exe, Path input, Path userOut, long timeLimitMs, long memoryLimitMb) throws Exception {
+    static final String RUNNER_USER = "code_runner";
+    static final String CHECKER_USER = "checker_runner";
+
+    private final JudgeProperties props;
+    private final ProcessMonitor monitor;
+    private final CgroupV2 cgroup; // null when running in /proc polling mode
+    private final Path launcher;   // null when falling back to su
+
+    public SandboxRunner(JudgeProperties props, ProcessMonitor monitor) {
+        this.props = props;
+        this.monitor = monitor;
+        Path l = Paths.get(props.getLauncher());
+        if (Files.isExecutable(l)) {
+            this.launcher = l;
+        } else {
+            this.launcher = null;
+            log.warn("Launcher {} not found, running tests through su", l);
+        }
+        // Only the launcher joins the cgroup right before exec, a wrapper shell would be
+        // charged to the program
+        if (props.isCgroupEnabled() && launcher == null) {
+            log.warn("cgroup v2 sandbox needs the launcher, falling back to /proc polling");
+        }
+        this.cgroup = props.isCgroupEnabled() && launcher != null ? CgroupV2.init(props.getCgroupRoot()) : null;
+    }
+
+    public RunResult run(Path exe, Path input, Path userOut, long timeLimitMs, long memoryLimitMb) throws Exception {
+        return run(exe, input, userOut, timeLimitMs, memoryLimitMb, -1);
+    }
+
+    /**
+     * @param cpu core to pin the program to, or -1 for no pinning
+     */
+    public RunResult run(Path exe, Path input, Path userOut, long timeLimitMs, long memoryLimitMb, int cpu) throws Exception {
+        return run(exe, List.of(), input, userOut, timeLimitMs, memoryLimitMb, cpu);
+    }
+
+    /**
+     * @param args command line arguments of the program
+     */
+    public RunResult run(Path exe, List<String> args, Path input, Path userOut, long timeLimitMs, long memoryLimitMb,
+                         int cpu) throws Exception {
+        return run(exe, args, input, userOut, timeLimitMs, memoryLimitMb, cpu,
+                props.getRunnerUid(), props.getRunnerGid(), RUNNER_USER);
+    }
+
+    /**
+     * Runs a checker as checker_runner. Its group can read the problem tree (see
+     * {@link ProblemDataCache}), code_runner cannot, and code_runner cannot signal or
+     * ptrace the checker.
+     */
+    public RunResult runChecker(Path exe, List<String> args, Path input, Path out, long timeLimitMs,
+                                long memoryLimitMb, int cpu) throws Exception {
+        return run(exe, args, input, out, timeLimitMs, memoryLimitMb, cpu,
+                props.getCheckerUid(), props.getCheckerGid(), CHECKER_USER);
+    }
+
+    private RunResult run(Path exe, List<String> args, Path input, Path userOut, long timeLimitMs, long memoryLimitMb,
+                          int cpu, int uid, int gid, String user) throws Exception {
         Files.deleteIfExists(userOut);
-        Path errFile = userOut.getParent().resolve("stderr_" + System.nanoTime() + ".log");
+        Path errFile = userOut.resolveSibling(userOut.getFileName() + ".stderr.log");
         Files.deleteIfExists(errFile);
 
-        // Set stack size to match memory limit (or a reasonable large value)
-        // ulimit -s unlimited is not easily set via ProcessBuilder directly without a shell wrapper
-        // But we can try to set it via shell invocation if needed.
-        // However, for simple C++ programs, the default stack might be small (8MB).
-        // Let's try to run it via /bin/sh to set ulimit.
-        
-        ProcessBuilder pb;
-        boolean useShellWrapper = true;
-        
-        if (useShellWrapper) {
-            // ulimit -s unlimited; ./main
-            // Note: 'unlimited' might be restricted by Docker container limits.
-            // We can try setting it to the memory limit (in KB).
-            long stackSizeKb = memoryLimitMb * 1024;
-            // Use 'exec' to replace the shell process with the target process, 
-            // ensuring the PID remains the same for memory monitoring and signal handling.
-            String cmd = String.format("ulimit -s %d; exec %s", stackSizeKb, exe.toAbsolutePath().toString());
-            // Run as code_runner user for isolation
-            // We use 'su' to switch user. The Java process must be running as root.
-            pb = new ProcessBuilder("su", "code_runner", "-s", "/bin/bash", "-c", cmd);
-        } else {
-            pb = new ProcessBuilder("su", "code_runner", "-s", "/bin/bash", "-c", exe.toAbsolutePath().toString());
+        // Stack limit follows the memory limit (the default 8MB is too small for deep recursion)
+        long stackSizeKb = memoryLimitMb * 1024;
+
+        Path cg = null;
+        if (cgroup != null) {
+            cg = cgroup.create(memoryLimitMb * 1024 * 1024, props.getPidsLimit());
         }
+        Path procs = cg == null ? null : cg.resolve("cgroup.procs");
+
+        ProcessBuilder pb = new ProcessBuilder(launcher != null
+                ? launcherCommand(launcher, uid, gid, stackSizeKb, cpu, procs, exe, args)
+                : suCommand(user, stackSizeKb, cpu, exe, args));
 
         // Clear environment variables to prevent leakage of sensitive info
         pb.environment().clear();
@@ -44,55 +97,120 @@ public class SandboxRunner {
         pb.redirectOutput(userOut.toFile());
         pb.redirectError(errFile.toFile());
 
+        try {
+            return cg != null
+                    ? runInCgroup(pb, cg, errFile, timeLimitMs, memoryLimitMb)
+                    : runSampled(pb, errFile, timeLimitMs, memoryLimitMb);
+        } finally {
+            CgroupV2.destroy(cg);
+        }
+    }
+
+    /**
+     * One fork+exec of the native launcher (launcher/oj_launcher.c): it joins the cgroup,
+     * pins the CPU, sets rlimits, drops to the runner uid and execs the program with a clean
+     * environment. The program keeps the launcher's pid.
+     */
+    static List<String> launcherCommand(Path launcher, int uid, int gid, long stackKb, int cpu, Path procs, Path exe,
+                                        List<String> args) {
+        List<String> cmd = new ArrayList<>(List.of(launcher.toString(),
+                "-u", String.valueOf(uid), "-g", String.valueOf(gid), "-s", String.valueOf(stackKb)));
+        if (cpu >= 0) {
+            cmd.add("-c");
+            cmd.add(String.valueOf(cpu));
+        }
+        if (procs != null) {
+            cmd.add("-p");
+            cmd.add(procs.toString());
+        }
+        cmd.add("--");
+        cmd.add(exe.toAbsolutePath().toString());
+        cmd.addAll(args);
+        return cmd;
+    }
+
+    /**
+     * Old path, used when the launcher is not installed: su (PAM) + bash for ulimit, plus
+     * taskset. Never used in cgroup mode. Also the baseline of SpawnBenchmark.
+     */
+    static List<String> suCommand(String user, long stackKb, int cpu, Path exe, List<String> args) {
+        // Use 'exec' to replace the shell process with the target process,
+        // ensuring the PID remains the same for memory monitoring and signal handling.
+        StringBuilder sh = new StringBuilder(String.format("ulimit -s %d; exec %s", stackKb, quote(exe.toAbsolutePath().toString())));
+        for (String a : args) sh.append(' ').append(quote(a));
+        // Run as an unprivileged user for isolation, the Java process must be running as root.
+        List<String> cmd = new ArrayList<>(List.of("su", user, "-s", "/bin/bash", "-c", sh.toString()));
+        if (cpu >= 0) {
+            List<String> pinned = new ArrayList<>(List.of("taskset", "-c", String.valueOf(cpu)));
+            pinned.addAll(cmd);
+            cmd = pinned;
+        }
+        return cmd;
+    }
+
+    private static String quote(String s) {
+        return "'" + s.replace("'", "'\"'\"'") + "'";
+    }
+
+    /**
+     * cgroup v2 mode: memory.max and pids.max are enforced by the kernel, the verdict uses
+     * the exact CPU time from cpu.stat and memory.peak after exit. The monitor polls cpu.stat
+     * and kills the run once it exceeds the time limit; wall clock only guards against
+     * programs that sleep or block. Kernels before 5.19 have no memory.peak, VmRSS is
+     * sampled instead.
+     */
+    private RunResult runInCgroup(ProcessBuilder pb, Path cg, Path errFile, long timeLimitMs, long memoryLimitMb)
+            throws Exception {
+        long wallLimitMs = timeLimitMs * props.getWallTimeFactor() + 1000;
+        boolean hasPeak = Files.exists(cg.resolve("memory.peak"));
+
         long startNs = System.nanoTime();
         Process p = pb.start();
-        long pid = p.pid();
-
-        long limitKb = memoryLimitMb * 1024;
-        long maxRssKb = 0;
-        boolean mle = false;
-        boolean finished = false;
-
-        // Monitor loop
-        long timeLimitNs = timeLimitMs * 1_000_000L;
-        // Add a small buffer to the deadline to allow the process to finish naturally if it's close to the limit
-        // But strictly, we should enforce timeLimitMs. 
-        // The original code used p.waitFor(timeLimitMs).
-        long deadlineNs = startNs + timeLimitNs;
-
-        while (true) {
-            // Check if process finished
-            if (p.waitFor(10, TimeUnit.MILLISECONDS)) {
-                finished = true;
-                break;
-            }
-
-            // Check memory
-            long currentRss = getVmRSS(pid);
-            if (currentRss > maxRssKb) {
-                maxRssKb = currentRss;
-            }
-
-            if (currentRss > limitKb) {
-                mle = true;
-                p.destroyForcibly();
-                break;
-            }
-
-            // Check time limit manually since we are in a loop
-            if (System.nanoTime() > deadlineNs) {
-                break; // TLE will be handled below
-            }
+        ProcessMonitor.Watch w = monitor.watch(p, startNs, wallLimitMs, hasPeak ? 0 : memoryLimitMb * 1024,
+                cg.resolve("cpu.stat"), timeLimitMs * 1000);
+        w.await();
+        boolean finished = !w.timedOut() && !w.cpuExceeded();
+
+        RunResult rr = new RunResult();
+        rr.timeMs = w.elapsedMs();
+        long usageUsec = CgroupV2.cpuUsageUsec(cg);
+        rr.cpuTimeMs = usageUsec < 0 ? -1 : usageUsec / 1000;
+        long peak = hasPeak ? CgroupV2.memoryPeakBytes(cg) : -1;
+        rr.peakMemoryKb = peak < 0 ? -1 : peak / 1024;
+        rr.rssKb = peak < 0 ? w.maxRssKb() : rr.peakMemoryKb;
+        rr.mle = CgroupV2.oomKills(cg) > 0 || w.memoryExceeded();
+        rr.tle = !finished || rr.cpuTimeMs > timeLimitMs;
+        rr.exitCode = finished ? p.exitValue() : -1;
+
+        if (rr.mle) {
+            rr.ok = false;
+            rr.tle = false;
+            rr.detail = "memory_limit_exceeded";
+        } else if (rr.tle) {
+            rr.ok = false;
+            rr.detail = finished || w.cpuExceeded() ? "cpu_time_limit_exceeded" : "killed_by_timeout";
+        } else {
+            rr.ok = rr.exitCode == 0;
+            rr.detail = Files.exists(errFile) ? Files.readString(errFile, StandardCharsets.UTF_8) : "";
         }
+        return rr;
+    }
 
-        long endNs = System.nanoTime();
+    /**
+     * Fallback mode: VmRSS is sampled by the shared {@link ProcessMonitor}, time is wall clock.
+     */
+    private RunResult runSampled(ProcessBuilder pb, Path errFile, long timeLimitMs, long memoryLimitMb) throws Exception {
+        long startNs = System.nanoTime();
+        Process p = pb.start();
+        ProcessMonitor.Watch w = monitor.watch(p, startNs, timeLimitMs, memoryLimitMb * 1024);
+        w.await();
 
         RunResult rr = new RunResult();
-        rr.timeMs = (endNs - startNs) / 1_000_000L;
-        rr.rssKb = maxRssKb;
-        rr.mle = mle;
+        rr.timeMs = w.elapsedMs();
+        rr.rssKb = w.maxRssKb();
+        rr.mle = w.memoryExceeded();
 
-        if (mle) {
+        if (rr.mle) {
             rr.ok = false;
             rr.tle = false;
             rr.exitCode = -1;
@@ -100,9 +218,7 @@ public class SandboxRunner {
             return rr;
         }
 
-        if (!finished) {
-            p.destroyForcibly();
-            p.waitFor(1000, TimeUnit.MILLISECONDS);
+        if (w.timedOut()) {
             rr.ok = false;
             rr.tle = true;
             rr.exitCode = -1;
@@ -117,33 +233,25 @@ public class SandboxRunner {
         return rr;
     }
 
-    private static long getVmRSS(long pid) {
-        try {
-            Path statusPath = Paths.get("/proc", String.valueOf(pid), "status");
-            if (!Files.exists(statusPath)) return 0;
-            List<String> lines = Files.readAllLines(statusPath);
-            for (String line : lines) {
-                if (line.startsWith("VmRSS:")) {
-                    // Example: VmRSS:    1234 kB
-                    String[] parts = line.trim().split("\\s+");
-                    if (parts.length >= 2) {
-                        return Long.parseLong(parts[1]);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // ignore
-        }
-        return 0;
-    }
-
     public static class RunResult {
         public boolean ok;
         public boolean tle;
         public boolean mle;
         public int exitCode;
-        public long timeMs;
-        public long rssKb;
+        public long timeMs;       // wall clock
+        public long rssKb;        // sampled VmRSS (polling mode) or peak (cgroup mode)
+        public long cpuTimeMs = -1;    // cgroup cpu.stat usage, -1 if not measured
+        public long peakMemoryKb = -1; // cgroup memory.peak, -1 if not measured
         public String detail;
+
+        /** Time to report: CPU time when measured, wall clock otherwise. */
+        public long reportedTimeMs() {
+            return cpuTimeMs >= 0 ? cpuTimeMs : timeMs;
+        }
+
+        /** Memory to report: exact peak when measured, sampled maximum otherwise. */
+        public long reportedMemoryKb() {
+            return peakMemoryKb >= 0 ? peakMemoryKb : rssKb;
+        }
     }
 }
@@ -1,11 +1,15 @@
 package com.edu.oj.executor;
 
-import com.edu.oj.manager.FileSystemManager;
+import com.edu.oj.config.JudgeProperties;
+import com.edu.oj.manager.ProblemDataCache;
+import com.edu.oj.message.Priority;
 import com.edu.oj.message.ResultMessage;
 import com.edu.oj.message.SubmissionMessage;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.*;
 import org.apache.kafka.clients.producer.*;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.boot.SpringApplication;
@@ -26,13 +30,24 @@ public class TestMain {
     }
 
     @org.springframework.stereotype.Component
+    @Slf4j
     public static class JudgeWorker {
 
-        private final FileSystemManager fsm;
+        private final JudgeExecutor exec;
+        private final ProblemDataCache problemCache;
+        private final CompileCache compileCache;
+        private final JudgeProperties props;
         private final ObjectMapper om;
+        // compile cache counters at the last report
+        private long reportedHits = 0;
+        private long reportedMisses = 0;
 
-        public JudgeWorker(FileSystemManager fsm) {
-            this.fsm = fsm;
+        public JudgeWorker(JudgeExecutor exec, ProblemDataCache problemCache, CompileCache compileCache,
+                           JudgeProperties props) {
+            this.exec = exec;
+            this.problemCache = problemCache;
+            this.compileCache = compileCache;
+            this.props = props;
             this.om = new ObjectMapper();
         }
 
@@ -41,6 +56,7 @@ public class TestMain {
             String inTopic = env("KAFKA_SUBMISSION_TOPIC", "submission");
             String outTopic = env("KAFKA_RESULT_TOPIC", "result");
             String groupId = env("KAFKA_GROUP_ID", "judge-worker");
+            String problemTopic = env("KAFKA_PROBLEM_TOPIC", "problem-updated");
 
             Properties cprops = new Properties();
             cprops.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
@@ -52,57 +68,206 @@ public class TestMain {
             cprops.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, env("KAFKA_MAX_POLL", "4"));
             cprops.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, env("KAFKA_MAX_POLL_INTERVAL_MS", "1800000"));
 
+            // Problem updates reach every worker, no consumer group
+            Properties eprops = new Properties();
+            eprops.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
+            eprops.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+            eprops.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+            eprops.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+
             Properties pprops = new Properties();
             pprops.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
             pprops.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
             pprops.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
             pprops.put(ProducerConfig.ACKS_CONFIG, "all");
+            // Results are sent asynchronously and batched, idempotence keeps them in order per submission
+            pprops.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+            // Upper bound of the producer's own retries; a result still unsent by then fails its submission
+            pprops.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, env("KAFKA_DELIVERY_TIMEOUT_MS", "120000"));
+            pprops.put(ProducerConfig.LINGER_MS_CONFIG, env("KAFKA_LINGER_MS", "5"));
+            pprops.put(ProducerConfig.BATCH_SIZE_CONFIG, env("KAFKA_BATCH_SIZE", "65536"));
+            pprops.put(ProducerConfig.BUFFER_MEMORY_CONFIG, env("KAFKA_BUFFER_MEMORY", "33554432"));
+            int maxInFlight = Integer.parseInt(env("KAFKA_MAX_IN_FLIGHT_RESULTS", "1000"));
+            // Resends of a submission whose results failed, after the producer's own retries
+            int resultRetries = Integer.parseInt(env("KAFKA_RESULT_RETRIES", "5"));
+            long resultRetryBackoffMs = Long.parseLong(env("KAFKA_RESULT_RETRY_BACKOFF_MS", "1000"));
 
             int workers = Integer.parseInt(env("JUDGE_WORKERS", "2"));
-            ExecutorService pool = Executors.newFixedThreadPool(workers);
+            // Submissions waiting for a free worker per lane; above this the lane's partitions are paused
+            int maxQueued = Integer.parseInt(env("JUDGE_MAX_QUEUED", String.valueOf(workers)));
+            LaneScheduler scheduler = new LaneScheduler(
+                    LaneScheduler.parseWeights(env("JUDGE_LANE_WEIGHTS", "normal=3,rejudge=1")));
+            long reportIntervalMs = Long.parseLong(env("JUDGE_LANE_REPORT_MS", "30000"));
+            Map<String, Priority> laneOfTopic = new HashMap<>();
+            for (Priority p : Priority.values()) laneOfTopic.put(p.topic(inTopic), p);
+            OffsetTracker offsets = new OffsetTracker();
+
+            List<Thread> judgeThreads = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                Thread t = new Thread(() -> {
+                    try {
+                        while (true) scheduler.take().run();
+                    } catch (InterruptedException ignored) {
+                    }
+                }, "judge-" + i);
+                t.setDaemon(true);
+                t.start();
+                judgeThreads.add(t);
+            }
+
+            try (ProblemPrefetcher prefetcher = new ProblemPrefetcher(problemCache, eprops, problemTopic, om, props.getPrefetchThreads());
+                 KafkaConsumer<String, String> consumer = new KafkaConsumer<>(cprops);
+                 KafkaProducer<String, String> producer = new KafkaProducer<>(pprops);
+                 ResultPublisher publisher = new ResultPublisher(producer, outTopic, om, maxInFlight,
+                         resultRetries, resultRetryBackoffMs)) {
 
-            try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(cprops);
-                 KafkaProducer<String, String> producer = new KafkaProducer<>(pprops)) {
+                // Load hot problems while the first submissions are still being fetched
+                prefetcher.start(props.getPrefetchProblemIds());
 
-                consumer.subscribe(Collections.singletonList(inTopic));
+                consumer.subscribe(laneOfTopic.keySet(), new ConsumerRebalanceListener() {
+                    @Override
+                    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                        // Queued submissions of these partitions are skipped and redelivered to the
+                        // new owner, running ones finish first so their offsets can be committed.
+                        try {
+                            Map<TopicPartition, OffsetAndMetadata> last = offsets.revoke(partitions);
+                            if (!last.isEmpty()) consumer.commitSync(last);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } catch (Exception e) {
+                            log.warn("Failed to commit offsets of revoked partitions {}", partitions, e);
+                        }
+                    }
 
+                    @Override
+                    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                        // Lanes are paused or resumed again by the poll loop
+                    }
+                });
+
+                long lastReport = System.currentTimeMillis();
                 while (true) {
-                    ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(500));
-                    if (records.isEmpty()) continue;
+                    ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(100));
 
-                    List<Future<?>> futures = new ArrayList<>();
                     for (ConsumerRecord<String, String> r : records) {
-                        futures.add(pool.submit(() -> {
-                            SubmissionMessage sm = null;
+                        TopicPartition tp = new TopicPartition(r.topic(), r.partition());
+                        OffsetTracker.Partition p = offsets.add(tp, r.offset());
+                        scheduler.submit(laneOfTopic.getOrDefault(r.topic(), Priority.NORMAL), r.timestamp(), () -> {
+                            boolean started = p.start();
+                            boolean delivered = false;
                             try {
-                                sm = om.readValue(r.value(), SubmissionMessage.class);
-                                JudgeExecutor exec = new JudgeExecutor(fsm);
-                                SubmissionMessage finalSm = sm;
-                                exec.judge(sm, msg -> sendResult(producer, outTopic, finalSm.submissionId, msg));
-                            } catch (Exception e) {
-                                if (sm != null) {
-                                    ResultMessage rm = JudgeExecutor.systemError(sm, "system_error: " + e.getMessage());
-                                    sendResult(producer, outTopic, sm.submissionId, rm);
+                                if (started) delivered = judge(r, publisher);
+                            } finally {
+                                if (started && !delivered) {
+                                    p.fail(r.offset());
+                                } else {
+                                    p.complete(r.offset(), started);
                                 }
                             }
-                        }));
+                        });
                     }
 
-                    for (Future<?> f : futures) {
-                        try { f.get(); } catch (Exception ignored) {}
+                    // Backpressure per lane: stop fetching a lane while its queue is full, so a
+                    // rejudge backlog never takes the room of user submissions
+                    Set<TopicPartition> paused = consumer.paused();
+                    for (Map.Entry<String, Priority> lane : laneOfTopic.entrySet()) {
+                        List<TopicPartition> tps = new ArrayList<>();
+                        for (TopicPartition tp : consumer.assignment()) {
+                            if (tp.topic().equals(lane.getKey())) tps.add(tp);
+                        }
+                        if (tps.isEmpty()) continue;
+                        int depth = scheduler.depth(lane.getValue());
+                        boolean lanePaused = paused.containsAll(tps);
+                        if (depth >= maxQueued && !lanePaused) {
+                            consumer.pause(tps);
+                        } else if (depth < maxQueued && !Collections.disjoint(paused, tps)) {
+                            consumer.resume(tps);
+                        }
                     }
-                    consumer.commitSync();
+
+                    Map<TopicPartition, OffsetAndMetadata> commit = offsets.committable();
+                    if (!commit.isEmpty()) {
+                        consumer.commitAsync(commit, (o, e) -> {
+                            if (e != null) log.warn("Failed to commit offsets {}", o, e);
+                        });
+                    }
+
+                    if (System.currentTimeMillis() - lastReport >= reportIntervalMs) {
+                        lastReport = System.currentTimeMillis();
+                        reportLanes(consumer, scheduler, laneOfTopic);
+                        reportCompileCache();
+                    }
+                }
+            } finally {
+                judgeThreads.forEach(Thread::interrupt);
+            }
+        }
+
+        // Per lane: Kafka lag of the partitions owned here, local queue depth, and how long the
+        // submissions started since the last report waited (send time to judge start)
+        private void reportLanes(KafkaConsumer<String, String> consumer, LaneScheduler scheduler,
+                                 Map<String, Priority> laneOfTopic) {
+            Map<Priority, LaneScheduler.WaitStats> waits = scheduler.drainWaitStats();
+            for (Map.Entry<String, Priority> lane : laneOfTopic.entrySet()) {
+                long lag = 0;
+                for (TopicPartition tp : consumer.assignment()) {
+                    if (tp.topic().equals(lane.getKey())) lag += consumer.currentLag(tp).orElse(0);
                 }
+                LaneScheduler.WaitStats w = waits.get(lane.getValue());
+                log.info("Lane {}: lag={} queued={} started={} avgWaitMs={} maxWaitMs={}",
+                        lane.getValue(), lag, scheduler.depth(lane.getValue()), w.started, w.avgWaitMs, w.maxWaitMs);
             }
         }
 
-        private void sendResult(KafkaProducer<String, String> producer, String topic, Long key, ResultMessage rm) {
+        // Compile cache hits and misses since the last report, and the hit rate over that interval
+        private void reportCompileCache() {
+            long hits = compileCache.getHits();
+            long misses = compileCache.getMisses();
+            long h = hits - reportedHits;
+            long m = misses - reportedMisses;
+            reportedHits = hits;
+            reportedMisses = misses;
+            log.info("Compile cache: hits={} misses={} hitRate={}% (total hits={}, misses={})",
+                    h, m, h + m == 0 ? 0 : h * 100 / (h + m), hits, misses);
+        }
+
+        /**
+         * Judges one record and publishes its results.
+         * <p>
+         * Results still undelivered after the publisher's retries are replaced by a single
+         * system_error result, so the submission gets a final state and the partition's
+         * offset can move on; if even that fails the backend's judge timeout reports it.
+         * @return false only when interrupted (worker shutdown) before the results were
+         *         delivered, the record is then left uncommitted for the next owner
+         */
+        private boolean judge(ConsumerRecord<String, String> r, ResultPublisher publisher) {
+            SubmissionMessage sm = null;
             try {
-                String v = om.writeValueAsString(rm);
-                producer.send(new ProducerRecord<>(topic, String.valueOf(key), v));
-                producer.flush();
-            } catch (Exception ignored) {
+                sm = om.readValue(r.value(), SubmissionMessage.class);
+                SubmissionMessage finalSm = sm;
+                exec.judge(sm, msg -> publisher.publish(finalSm.submissionId, msg));
+            } catch (Exception e) {
+                if (sm != null) {
+                    ResultMessage rm = JudgeExecutor.systemError(sm, "system_error: " + e.getMessage());
+                    publisher.publish(sm.submissionId, rm);
+                } else {
+                    log.error("Dropped malformed submission message at {}-{}@{}", r.topic(), r.partition(), r.offset(), e);
+                    return true;
+                }
+            }
+            if (publisher.finish(sm.submissionId)) return true;
+            if (Thread.currentThread().isInterrupted()) {
+                log.warn("Interrupted before results of submission {} were delivered, leaving {}-{}@{} uncommitted",
+                        sm.submissionId, r.topic(), r.partition(), r.offset());
+                return false;
+            }
+            log.error("Results of submission {} were not delivered after retries, reporting system_error", sm.submissionId);
+            publisher.publish(sm.submissionId, JudgeExecutor.systemError(sm, "system_error: results_not_delivered"));
+            if (!publisher.finish(sm.submissionId)) {
+                log.error("Results of submission {} lost, committing {}-{}@{}; the backend times the submission out",
+                        sm.submissionId, r.topic(), r.partition(), r.offset());
             }
+            return true;
         }
 
         private String env(String k, String d) {
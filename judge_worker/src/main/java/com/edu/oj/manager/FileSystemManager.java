@@ -5,6 +5,9 @@ import com.edu.oj.entity.SubmissionConfig;
 import com.edu.oj.exceptions.BusinessException;
 import com.edu.oj.exceptions.CommonErrorCode;
 import com.edu.oj.entity.ProblemConfig;
+import com.edu.oj.entity.ProblemMetadata;
+import com.edu.oj.entity.TestCaseInfo;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,15 +15,29 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.Map;
 
@@ -54,6 +71,10 @@ public class FileSystemManager {
     @Qualifier("jsonMapper")
     private ObjectMapper jsonMapper;
 
+    @Autowired
+    @Qualifier("manifestMapper")
+    private ObjectMapper manifestMapper;
+
     /**
      * 保存题目压缩包
      * @param problemId 题目ID
@@ -185,6 +206,40 @@ public class FileSystemManager {
         }
     }
 
+    /**
+     * 读取上传时单独发布的题目对象 {@code problem/{id}/{name}}
+     * @return 对象不存在（旧数据）时返回 null
+     */
+    private InputStream getProblemObject(Long problemId, String name) throws IOException {
+        String key = "problem/" + problemId + "/" + name;
+        try {
+            return s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(s3Properties.getBucket())
+                    .key(key)
+                    .build());
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (S3Exception e) {
+            throw new IOException("Failed to get " + key, e);
+        }
+    }
+
+    /**
+     * 读取测试点清单（含配置与每个测试点的 SHA-256），不下载压缩包
+     * @param problemId 题目ID
+     * @return 清单，旧数据没有清单或清单格式无法识别时返回 null（改为下载压缩包）；
+     *         其 version 为对应压缩包的 ETag
+     * @throws IOException IO异常
+     */
+    public ProblemMetadata getProblemManifest(Long problemId) throws IOException {
+        try (InputStream is = getProblemObject(problemId, "manifest.json")) {
+            return is == null ? null : manifestMapper.readValue(is, ProblemMetadata.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Unreadable manifest of problem {}, downloading the zip instead: {}", problemId, e.getOriginalMessage());
+            return null;
+        }
+    }
+
     public ProblemConfig getProblemConfig(Long problemId) throws IOException {
         try (InputStream is = getProblemFileStream(problemId, "config.yml")) {
             return yamlMapper.readValue(is, ProblemConfig.class);
@@ -197,6 +252,44 @@ public class FileSystemManager {
         }
     }
 
+    /**
+     * 从已解压的题目目录读取题目元数据
+     * @param problemId 题目ID
+     * @param version 题目数据版本
+     * @param root 解压目录
+     * @return 题目配置与测试点清单
+     * @throws IOException IO异常
+     */
+    public ProblemMetadata readProblemMetadata(Long problemId, String version, Path root) throws IOException {
+        Path configFile = root.resolve("config.yml");
+        if (!Files.exists(configFile)) configFile = root.resolve("config.yaml");
+        if (!Files.exists(configFile)) {
+            throw new BusinessException(CommonErrorCode.RESOURCE_NOT_FOUND, "File not found in zip: config.yml");
+        }
+        ProblemConfig config;
+        try (InputStream is = Files.newInputStream(configFile)) {
+            config = yamlMapper.readValue(is, ProblemConfig.class);
+        }
+
+        List<TestCaseInfo> testCases = new ArrayList<>();
+        Path tcDir = root.resolve("testcases");
+        if (Files.isDirectory(tcDir)) {
+            List<Path> inputs;
+            try (Stream<Path> s = Files.list(tcDir)) {
+                inputs = s.filter(p -> p.getFileName().toString().endsWith(".in"))
+                        .sorted(Comparator.comparing(p -> p.getFileName().toString()))
+                        .collect(Collectors.toList());
+            }
+            for (Path in : inputs) {
+                String file = in.getFileName().toString();
+                String name = file.substring(0, file.length() - ".in".length());
+                Path out = tcDir.resolve(name + ".out");
+                testCases.add(new TestCaseInfo(name, Files.size(in), Files.exists(out) ? Files.size(out) : 0L, null, null));
+            }
+        }
+        return new ProblemMetadata(problemId, version, config, testCases, null);
+    }
+
     /**
      * 删除题目数据
      * @param problemId 题目ID
@@ -241,31 +334,108 @@ public class FileSystemManager {
         }
     }
 
-    public Path extractProblemToTemp(Long problemId) throws java.io.IOException {
+    /**
+     * 获取题目压缩包的 ETag
+     * @param problemId 题目ID
+     * @return ETag
+     * @throws IOException IO异常
+     */
+    public String getProblemETag(Long problemId) throws IOException {
         String key = "problem/" + problemId + ".zip";
-        software.amazon.awssdk.core.ResponseBytes<software.amazon.awssdk.services.s3.model.GetObjectResponse> bytes =
-                s3Client.getObjectAsBytes(software.amazon.awssdk.services.s3.model.GetObjectRequest.builder()
-                        .bucket(s3Properties.getBucket())
-                        .key(key)
-                        .build());
-        byte[] zipBytes = bytes.asByteArray();
-        java.nio.file.Path root = java.nio.file.Files.createTempDirectory("problem_" + problemId + "_");
-        try (java.util.zip.ZipInputStream zis = new java.util.zip.ZipInputStream(new java.io.ByteArrayInputStream(zipBytes))) {
-            java.util.zip.ZipEntry e;
-            byte[] buf = new byte[8192];
-            while ((e = zis.getNextEntry()) != null) {
+        try {
+            return s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(s3Properties.getBucket())
+                    .key(key)
+                    .build()).eTag();
+        } catch (NoSuchKeyException e) {
+            throw new BusinessException(CommonErrorCode.RESOURCE_NOT_FOUND, "Problem zip not found");
+        } catch (S3Exception e) {
+            throw new IOException("Failed to stat problem zip", e);
+        }
+    }
+
+    /**
+     * 下载题目压缩包到本地文件
+     * @param problemId 题目ID
+     * @param target 目标文件
+     * @return 下载到的对象 ETag，作为题目数据版本
+     * @throws IOException IO异常
+     */
+    public String downloadProblemZip(Long problemId, Path target) throws IOException {
+        String key = "problem/" + problemId + ".zip";
+        try {
+            Files.deleteIfExists(target);
+            GetObjectResponse resp = s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(s3Properties.getBucket())
+                    .key(key)
+                    .build(), ResponseTransformer.toFile(target));
+            return resp.eTag();
+        } catch (NoSuchKeyException e) {
+            throw new BusinessException(CommonErrorCode.RESOURCE_NOT_FOUND, "Problem zip not found");
+        } catch (S3Exception e) {
+            throw new IOException("Failed to download problem zip", e);
+        }
+    }
+
+    /**
+     * 下载按内容寻址的题目文件 {@code testdata/{sha256}}，校验内容哈希
+     * @param sha256 内容哈希
+     * @param target 目标文件
+     * @return 文件字节数
+     * @throws IOException IO异常，哈希不符时也抛出
+     */
+    public long downloadTestdata(String sha256, Path target) throws IOException {
+        String key = "testdata/" + sha256;
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        long size;
+        try (InputStream is = new DigestInputStream(s3Client.getObject(GetObjectRequest.builder()
+                .bucket(s3Properties.getBucket())
+                .key(key)
+                .build()), md)) {
+            size = Files.copy(is, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchKeyException e) {
+            throw new BusinessException(CommonErrorCode.RESOURCE_NOT_FOUND, "Testdata not found: " + sha256);
+        } catch (S3Exception e) {
+            throw new IOException("Failed to download " + key, e);
+        }
+        String actual = HexFormat.of().formatHex(md.digest());
+        if (!actual.equals(sha256)) {
+            throw new IOException("Checksum mismatch of " + key + ": " + actual);
+        }
+        return size;
+    }
+
+    /**
+     * 解压到指定目录
+     * @param zip 压缩包
+     * @param root 目标目录
+     * @return 解压后的总字节数
+     * @throws IOException IO异常
+     */
+    public static long extractZip(Path zip, Path root) throws IOException {
+        long total = 0;
+        Path base = root.toAbsolutePath().normalize();
+        try (ZipFile zf = new ZipFile(zip.toFile())) {
+            Enumeration<? extends ZipEntry> it = zf.entries();
+            while (it.hasMoreElements()) {
+                ZipEntry e = it.nextElement();
                 if (e.isDirectory()) continue;
-                java.nio.file.Path target = root.resolve(e.getName()).normalize();
-                java.nio.file.Files.createDirectories(target.getParent());
-                try (java.io.OutputStream os = java.nio.file.Files.newOutputStream(target)) {
-                    int n;
-                    while ((n = zis.read(buf)) > 0) {
-                        os.write(buf, 0, n);
-                    }
+                Path target = base.resolve(e.getName()).normalize();
+                if (!target.startsWith(base)) {
+                    throw new BusinessException(CommonErrorCode.BAD_REQUEST, "Illegal zip entry: " + e.getName());
+                }
+                Files.createDirectories(target.getParent());
+                try (InputStream is = zf.getInputStream(e)) {
+                    total += Files.copy(is, target, StandardCopyOption.REPLACE_EXISTING);
                 }
             }
         }
-        return root;
+        return total;
     }
 
 }
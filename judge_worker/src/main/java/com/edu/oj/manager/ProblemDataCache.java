@@ -0,0 +1,495 @@
+package com.edu.oj.manager;
+
+import com.edu.oj.config.JudgeProperties;
+import com.edu.oj.entity.ProblemFile;
+import com.edu.oj.entity.ProblemMetadata;
+import com.edu.oj.exceptions.BusinessException;
+import com.edu.oj.exceptions.CommonErrorCode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 本地题目数据缓存
+ * <p>
+ * Keeps extracted problem trees on local disk, keyed by problem id and the ETag of
+ * {@code problem/{id}.zip}. Concurrent judgments of the same problem share one tree
+ * through {@link Lease}s; trees must be treated as read-only by the holders.
+ * Total size is bounded by {@code judge.problem-cache-max-bytes} with LRU eviction
+ * of entries that are not leased. A changed ETag retires the old tree, which is
+ * deleted once its last lease is closed.
+ * <p>
+ * The parsed {@link ProblemMetadata} (config and testcase manifest) is built once
+ * per version when the tree is loaded and served from memory afterwards. It comes from
+ * the {@code manifest.json} published at upload when that matches the zip ETag, and is
+ * rebuilt from the extracted tree otherwise (problems uploaded before manifests).
+ * <p>
+ * With a manifest the zip is not downloaded at all: every file is content-addressed as
+ * {@code testdata/{sha256}}, kept once in a local store under {@code {cacheDir}/testdata}
+ * and hard-linked into the trees, so a new version of a problem only downloads the files
+ * whose content changed, in parallel. Each stored file is reference-counted by the live
+ * trees built from it and deleted when the last of them is deleted. The store survives
+ * restarts; what the previous run left is kept up to {@code judge.problem-cache-max-bytes},
+ * most recently stored first, and reused by the next loads. Until a tree uses them these
+ * files count against the same budget as the trees and are evicted before any tree.
+ */
+@Component
+@Slf4j
+public class ProblemDataCache {
+
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+
+    private final FileSystemManager fsm;
+    private final Path root;
+    private final long maxBytes;
+    private final int checkerGid;
+
+    // access-ordered, guarded by this
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // trees plus orphans, guarded by this
+    private long totalBytes = 0;
+    // stored files left by a previous run that no tree uses yet: sha256 -> size, oldest
+    // first; guarded by this. Lock order is blobLock, then this.
+    private final LinkedHashMap<String, Long> orphans = new LinkedHashMap<>();
+
+    private final ConcurrentMap<Long, Object> loadLocks = new ConcurrentHashMap<>();
+
+    // content-addressed store, files are named by their sha256
+    private final Path blobs;
+    // guards linking into the store, blobRefs and deleting from the store
+    private final Object blobLock = new Object();
+    // sha256 -> number of live or loading trees built from that file
+    private final Map<String, Integer> blobRefs = new HashMap<>();
+    private volatile boolean linkWarned = false;
+    private final ExecutorService downloader;
+
+    public ProblemDataCache(FileSystemManager fsm, JudgeProperties props) throws IOException {
+        this.fsm = fsm;
+        this.root = Paths.get(props.getCacheDir(), "problems").toAbsolutePath();
+        this.blobs = Paths.get(props.getCacheDir(), "testdata").toAbsolutePath();
+        this.maxBytes = props.getProblemCacheMaxBytes();
+        this.checkerGid = props.getCheckerGid();
+        // Trees left by a previous run are not indexed, start from scratch
+        deleteTree(root);
+        Files.createDirectories(root);
+        Files.createDirectories(blobs);
+        // Trees are reached through root only, the store is never read by another user
+        setMode(root, "rwxr-xr-x");
+        setMode(blobs, "rwx------");
+        trimBlobs();
+        this.downloader = Executors.newFixedThreadPool(Math.max(1, props.getTestdataDownloadThreads()), r -> {
+            Thread t = new Thread(r, "testdata-download");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 获取题目数据，必要时从 S3 下载并解压
+     * @param problemId 题目ID
+     * @return 租约，使用完毕后必须关闭
+     * @throws IOException IO异常
+     */
+    public Lease acquire(Long problemId) throws IOException {
+        String etag = fsm.getProblemETag(problemId);
+        Lease hit = tryAcquire(problemId, etag);
+        if (hit != null) return hit;
+
+        // One download per problem at a time, other judgments wait and then hit
+        Object lock = loadLocks.computeIfAbsent(problemId, k -> new Object());
+        synchronized (lock) {
+            hit = tryAcquire(problemId, etag);
+            if (hit != null) return hit;
+            return load(problemId, etag);
+        }
+    }
+
+    private synchronized Lease tryAcquire(Long problemId, String etag) {
+        Entry e = entries.get(problemId);
+        if (e == null || !e.etag.equals(etag)) return null;
+        e.refs++;
+        return new Lease(e);
+    }
+
+    private Lease load(Long problemId, String etag) throws IOException {
+        Path tmp = Files.createTempDirectory(root, "loading_" + problemId + "_");
+        Set<String> held = ConcurrentHashMap.newKeySet();
+        Entry e;
+        try {
+            ProblemMetadata meta = fsm.getProblemManifest(problemId);
+            long bytes;
+            if (meta != null && meta.getFiles() != null && etag.equals(meta.getVersion())) {
+                bytes = syncFiles(problemId, meta.getFiles(), tmp, held);
+            } else {
+                Path zip = Files.createTempFile(root, "download_" + problemId + "_", ".zip");
+                try {
+                    etag = fsm.downloadProblemZip(problemId, zip);
+                    bytes = FileSystemManager.extractZip(zip, tmp);
+                } finally {
+                    Files.deleteIfExists(zip);
+                }
+                if (meta == null || !etag.equals(meta.getVersion())) {
+                    meta = fsm.readProblemMetadata(problemId, etag, tmp);
+                }
+            }
+            restrictToChecker(tmp);
+            Path dir = root.resolve(problemId + "_" + Integer.toHexString(etag.hashCode()) + "_" + System.nanoTime());
+            Files.move(tmp, dir, StandardCopyOption.ATOMIC_MOVE);
+            e = new Entry(problemId, etag, dir, bytes, meta, held);
+            log.info("Problem {} cached at {} (etag={}, {} bytes)", problemId, dir, etag, bytes);
+        } catch (IOException | RuntimeException ex) {
+            deleteTree(tmp);
+            releaseBlobs(held);
+            throw ex;
+        }
+
+        List<Entry> toDelete = new ArrayList<>();
+        List<String> blobsToDelete = new ArrayList<>();
+        Lease lease;
+        synchronized (this) {
+            Entry old = entries.put(problemId, e);
+            if (old != null) {
+                retire(old, toDelete);
+            }
+            totalBytes += e.bytes;
+            e.refs++;
+            lease = new Lease(e);
+            evict(toDelete, blobsToDelete);
+        }
+        deleteOrphans(blobsToDelete);
+        deleteTrees(toDelete);
+        return lease;
+    }
+
+    /**
+     * 按清单组装题目目录：本地已有的内容直接链接，缺少的并行下载
+     * @param held 收集目录引用的内容 sha256，每个已计入 blobRefs 一次
+     * @return 目录中文件的总字节数
+     */
+    private long syncFiles(Long problemId, List<ProblemFile> files, Path dir, Set<String> held) throws IOException {
+        Path base = dir.toAbsolutePath().normalize();
+        Map<String, List<Path>> missing = new LinkedHashMap<>();
+        long bytes = 0;
+        synchronized (blobLock) {
+            for (ProblemFile f : files) {
+                Path target = base.resolve(f.getPath()).normalize();
+                if (!target.startsWith(base) || !SHA256.matcher(f.getSha256()).matches()) {
+                    throw new BusinessException(CommonErrorCode.BAD_REQUEST, "Illegal manifest entry: " + f.getPath());
+                }
+                Files.createDirectories(target.getParent());
+                Path blob = blobs.resolve(f.getSha256());
+                if (Files.exists(blob)) {
+                    link(blob, target);
+                    hold(f.getSha256(), held);
+                } else {
+                    missing.computeIfAbsent(f.getSha256(), k -> new ArrayList<>()).add(target);
+                }
+                bytes += f.getSize();
+            }
+        }
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (Map.Entry<String, List<Path>> m : missing.entrySet()) {
+            futures.add(downloader.submit(() -> {
+                Path part = Files.createTempFile(blobs, m.getKey() + "_", ".part");
+                try {
+                    fsm.downloadTestdata(m.getKey(), part);
+                    synchronized (blobLock) {
+                        Path blob = blobs.resolve(m.getKey());
+                        Files.move(part, blob, StandardCopyOption.ATOMIC_MOVE);
+                        for (Path target : m.getValue()) link(blob, target);
+                        hold(m.getKey(), held);
+                    }
+                } finally {
+                    Files.deleteIfExists(part);
+                }
+                return null;
+            }));
+        }
+        // Wait for every download, so none of them still writes into dir after a failure
+        Exception failure = null;
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException ex) {
+                if (failure == null) failure = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                futures.forEach(x -> x.cancel(true));
+                throw new InterruptedIOException("Interrupted while loading problem " + problemId);
+            }
+        }
+        if (failure instanceof IOException io) throw io;
+        if (failure instanceof RuntimeException re) throw re;
+        if (failure != null) throw new IOException("Failed to load problem " + problemId, failure);
+
+        log.info("Problem {} synced: {} files, {} downloaded, {} reused",
+                problemId, files.size(), missing.size(), files.size() - missing.values().stream().mapToInt(List::size).sum());
+        return bytes;
+    }
+
+    /**
+     * 题目目录只对评测机和 checker 用户组可读
+     * <p>
+     * Checkers run as checker_runner and open the testcases by path, the contestant program
+     * runs as code_runner and must not read the expected outputs: directories become
+     * root:checkerGid 0750 and files 0640. Linked files share the inode with the store, so
+     * the store gets the same modes.
+     */
+    private void restrictToChecker(Path tree) throws IOException {
+        try (Stream<Path> s = Files.walk(tree)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                boolean dir = Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS);
+                if (!dir && !Files.isRegularFile(p, LinkOption.NOFOLLOW_LINKS)) continue;
+                Files.setAttribute(p, "unix:gid", checkerGid, LinkOption.NOFOLLOW_LINKS);
+                Files.setPosixFilePermissions(p, PosixFilePermissions.fromString(dir ? "rwxr-x---" : "rw-r-----"));
+            }
+        } catch (UnsupportedOperationException | IllegalArgumentException ex) {
+            log.warn("No POSIX permissions on {}, checkers cannot be isolated from the testcases", tree);
+        }
+    }
+
+    private static void setMode(Path p, String mode) throws IOException {
+        try {
+            Files.setPosixFilePermissions(p, PosixFilePermissions.fromString(mode));
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+
+    // Hard link so trees share the stored content; copies where links are not supported
+    private void link(Path blob, Path target) throws IOException {
+        try {
+            Files.createLink(target, blob);
+        } catch (UnsupportedOperationException | FileSystemException ex) {
+            if (!linkWarned) {
+                linkWarned = true;
+                log.warn("Cannot hard-link from {} ({}), testcases are copied and take twice the disk space", blobs, ex.toString());
+            }
+            Files.copy(blob, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // caller holds blobLock
+    private void hold(String sha256, Set<String> held) {
+        if (!held.add(sha256) || blobRefs.merge(sha256, 1, Integer::sum) > 1) return;
+        // From now on the file is part of a tree and counted with its bytes
+        synchronized (this) {
+            Long size = orphans.remove(sha256);
+            if (size != null) totalBytes -= size;
+        }
+    }
+
+    // Drops stored contents that no other tree was built from
+    private void releaseBlobs(Set<String> held) {
+        if (held.isEmpty()) return;
+        synchronized (blobLock) {
+            for (String sha256 : held) {
+                if (blobRefs.computeIfPresent(sha256, (k, n) -> n > 1 ? n - 1 : null) != null) continue;
+                try {
+                    Files.deleteIfExists(blobs.resolve(sha256));
+                } catch (IOException ex) {
+                    log.warn("Failed to delete {} from testdata store {}", sha256, blobs, ex);
+                }
+            }
+        }
+    }
+
+    // Evicted orphans, unless a tree started using one since
+    private void deleteOrphans(List<String> sha256s) {
+        if (sha256s.isEmpty()) return;
+        int deleted = 0;
+        synchronized (blobLock) {
+            for (String sha256 : sha256s) {
+                if (blobRefs.containsKey(sha256)) continue;
+                try {
+                    if (Files.deleteIfExists(blobs.resolve(sha256))) deleted++;
+                } catch (IOException ex) {
+                    log.warn("Failed to delete {} from testdata store {}", sha256, blobs, ex);
+                }
+            }
+        }
+        log.info("Evicted {} unused files from testdata store {}", deleted, blobs);
+    }
+
+    /**
+     * 启动时清理上次运行留下的内容
+     * <p>
+     * Nothing references the stored files yet. Unfinished downloads are dropped and the
+     * rest is kept up to the cache budget, most recently stored first, as orphans that
+     * count against the budget.
+     */
+    private void trimBlobs() throws IOException {
+        List<Path> stored = new ArrayList<>();
+        try (Stream<Path> s = Files.list(blobs)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                if (SHA256.matcher(p.getFileName().toString()).matches()) {
+                    stored.add(p);
+                } else {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+        Map<Path, FileTime> mtimes = new HashMap<>();
+        for (Path p : stored) mtimes.put(p, Files.getLastModifiedTime(p));
+        stored.sort(Comparator.comparing(mtimes::get, Comparator.reverseOrder()));
+        long kept = 0;
+        int deleted = 0;
+        List<Path> keptFiles = new ArrayList<>();
+        for (Path p : stored) {
+            long size = Files.size(p);
+            if (kept + size <= maxBytes) {
+                kept += size;
+                keptFiles.add(p);
+            } else {
+                Files.deleteIfExists(p);
+                deleted++;
+            }
+        }
+        // oldest first, so they are evicted in that order
+        synchronized (this) {
+            for (int i = keptFiles.size() - 1; i >= 0; i--) {
+                Path p = keptFiles.get(i);
+                orphans.put(p.getFileName().toString(), Files.size(p));
+            }
+            totalBytes += kept;
+        }
+        log.info("Testdata store {}: kept {} files ({} bytes), deleted {}", blobs, stored.size() - deleted, kept, deleted);
+    }
+
+    private void deleteTrees(List<Entry> trees) {
+        for (Entry e : trees) {
+            deleteTree(e.dir);
+            releaseBlobs(e.blobs);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        downloader.shutdownNow();
+    }
+
+    /**
+     * 使题目缓存失效，正在使用的数据在租约关闭后删除
+     * @param problemId 题目ID
+     */
+    public void invalidate(Long problemId) {
+        List<Entry> toDelete = new ArrayList<>();
+        synchronized (this) {
+            Entry old = entries.remove(problemId);
+            if (old != null) retire(old, toDelete);
+        }
+        deleteTrees(toDelete);
+    }
+
+    // caller holds the monitor
+    private void retire(Entry e, List<Entry> toDelete) {
+        e.retired = true;
+        totalBytes -= e.bytes;
+        if (e.refs == 0) toDelete.add(e);
+    }
+
+    // caller holds the monitor; orphans go first, then trees in LRU order
+    private void evict(List<Entry> toDelete, List<String> blobsToDelete) {
+        Iterator<Map.Entry<String, Long>> orphan = orphans.entrySet().iterator();
+        while (totalBytes > maxBytes && orphan.hasNext()) {
+            Map.Entry<String, Long> o = orphan.next();
+            orphan.remove();
+            totalBytes -= o.getValue();
+            blobsToDelete.add(o.getKey());
+        }
+        Iterator<Entry> it = entries.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry e = it.next();
+            if (e.refs > 0) continue;
+            it.remove();
+            retire(e, toDelete);
+            log.info("Problem {} evicted from cache (etag={})", e.problemId, e.etag);
+        }
+    }
+
+    private void release(Entry e) {
+        List<Entry> toDelete = new ArrayList<>();
+        List<String> blobsToDelete = new ArrayList<>();
+        synchronized (this) {
+            e.refs--;
+            if (e.retired && e.refs == 0) {
+                toDelete.add(e);
+            } else if (totalBytes > maxBytes) {
+                evict(toDelete, blobsToDelete);
+            }
+        }
+        deleteOrphans(blobsToDelete);
+        deleteTrees(toDelete);
+    }
+
+    private static void deleteTree(Path p) {
+        if (p == null || !Files.exists(p)) return;
+        try (var s = Files.walk(p)) {
+            s.sorted(Comparator.reverseOrder())
+                    .forEach(x -> { try { Files.deleteIfExists(x); } catch (Exception ignored) {} });
+        } catch (Exception ignored) {
+        }
+    }
+
+    private static class Entry {
+        final Long problemId;
+        final String etag;
+        final Path dir;
+        final long bytes;
+        final ProblemMetadata metadata;
+        // stored contents this tree holds a reference on, empty for trees extracted from the zip
+        final Set<String> blobs;
+        int refs = 0;
+        boolean retired = false;
+
+        Entry(Long problemId, String etag, Path dir, long bytes, ProblemMetadata metadata, Set<String> blobs) {
+            this.problemId = problemId;
+            this.etag = etag;
+            this.dir = dir;
+            this.bytes = bytes;
+            this.metadata = metadata;
+            this.blobs = blobs;
+        }
+    }
+
+    /**
+     * 对缓存题目数据的共享只读引用
+     */
+    public class Lease implements AutoCloseable {
+        private final Entry entry;
+        private boolean closed = false;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        public Path getRoot() {
+            return entry.dir;
+        }
+
+        public String getETag() {
+            return entry.etag;
+        }
+
+        public ProblemMetadata getMetadata() {
+            return entry.metadata;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            release(entry);
+        }
+    }
+}
@@ -17,6 +17,10 @@ public class ResultMessage {
     private Long timeUsed;
     private Long memoryUsed;
     private Long status;
+    // ms; compile times are set on the testCaseId=0 message, checker time per case
+    private Long compileTimeUsed;
+    private Long checkerCompileTimeUsed;
+    private Long checkerTimeUsed;
 
     private String input;
     private String expectedOutput;
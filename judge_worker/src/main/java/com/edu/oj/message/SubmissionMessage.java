@@ -11,4 +11,5 @@ public class SubmissionMessage {
     public Long submissionId;
     public Long problemId;
     public String language;
+    public Priority priority;
 }
@@ -0,0 +1,46 @@
+package com.edu.oj.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Default pinning follows the affinity mask of the worker, e.g. a container limited to 4-7.
+ */
+class JudgeConfigTest {
+
+    @Test
+    void parsesCpusetLists() {
+        assertEquals(List.of(0, 1, 2, 3, 8, 10, 11), JudgeConfig.parseCpuList(" 0-3,8,10-11\n"));
+    }
+
+    @Test
+    void defaultsToAllowedCpus() {
+        JudgeProperties props = new JudgeProperties();
+        props.setCaseThreads(2);
+        assertEquals(List.of(4, 5), JudgeConfig.pinnedCpus(props, List.of(4, 5, 6, 7)));
+
+        props.setCaseThreads(8);
+        assertEquals(List.of(4, 5, 6, 7), JudgeConfig.pinnedCpus(props, List.of(4, 5, 6, 7)));
+    }
+
+    @Test
+    void configuredCpusOutsideMaskAreDropped() {
+        JudgeProperties props = new JudgeProperties();
+        props.setCaseCpus("2,4-5");
+        assertEquals(List.of(4, 5), JudgeConfig.pinnedCpus(props, List.of(4, 5, 6, 7)));
+
+        props.setCaseCpus("0,1");
+        assertNull(JudgeConfig.pinnedCpus(props, List.of(4, 5, 6, 7)));
+    }
+
+    @Test
+    void unknownMaskDisablesDefaultPinning() {
+        JudgeProperties props = new JudgeProperties();
+        assertNull(JudgeConfig.pinnedCpus(props, null));
+        props.setCaseCpus("1,3");
+        assertEquals(List.of(1, 3), JudgeConfig.pinnedCpus(props, null));
+    }
+}
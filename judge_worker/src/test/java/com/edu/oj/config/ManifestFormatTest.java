@@ -0,0 +1,53 @@
+package com.edu.oj.config;
+
+import com.edu.oj.entity.ProblemConfig;
+import com.edu.oj.entity.ProblemMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reads the manifest the backend writes. The backend's ManifestFormatTest checks that its
+ * output equals the same problem-manifest.json, so both sides agree on the field names.
+ */
+class ManifestFormatTest {
+
+    @Test
+    void readsBackendManifest() throws IOException {
+        ProblemMetadata meta;
+        try (InputStream is = getClass().getResourceAsStream("/problem-manifest.json")) {
+            meta = new ObjectMapperConfig().manifestMapper().readValue(is, ProblemMetadata.class);
+        }
+        assertEquals(42L, meta.getProblemId());
+        assertEquals("\"3f2a9c\"", meta.getVersion());
+
+        ProblemConfig c = meta.getConfig();
+        assertEquals(2L, c.getNumber_count());
+        assertEquals(1000L, c.getTime_limit());
+        assertEquals(256L, c.getMemory_limit());
+        assertEquals("float", c.getCompare_mode());
+        assertEquals(1e-4, c.getFloat_abs_eps());
+        assertEquals(1e-5, c.getFloat_rel_eps());
+        assertEquals("checker.cpp", c.getChecker());
+        assertEquals(3000L, c.getChecker_time_limit());
+        assertEquals(128L, c.getChecker_memory_limit());
+
+        assertEquals(1, meta.getTestCases().size());
+        assertEquals("1", meta.getTestCases().get(0).getName());
+        assertEquals(4L, meta.getTestCases().get(0).getInputSize());
+        assertEquals("b".repeat(64), meta.getTestCases().get(0).getOutputSha256());
+        assertEquals(2, meta.getFiles().size());
+        assertEquals("testcases/1.in", meta.getFiles().get(1).getPath());
+        assertEquals("a".repeat(64), meta.getFiles().get(1).getSha256());
+    }
+
+    @Test
+    void camelCaseManifestIsRejected() {
+        // written before both sides used snake_case; must not load with defaulted limits
+        String old = "{\"problemId\":1,\"version\":\"v\",\"config\":{\"timeLimit\":1000},\"testCases\":[],\"files\":[]}";
+        assertThrows(IOException.class, () -> new ObjectMapperConfig().manifestMapper().readValue(old, ProblemMetadata.class));
+    }
+}
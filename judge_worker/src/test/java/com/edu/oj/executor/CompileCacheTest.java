@@ -0,0 +1,62 @@
+package com.edu.oj.executor;
+
+import com.edu.oj.config.JudgeProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrent compiles of the same source share one build at a time, also when builds are
+ * not cached and waiters come and go.
+ */
+class CompileCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void uncachedBuildsOfOneKeyNeverOverlap() throws Exception {
+        JudgeProperties props = new JudgeProperties();
+        props.setCacheDir(dir.resolve("cache").toString());
+        CompileCache cache = new CompileCache(props);
+        Path source = Files.writeString(dir.resolve("main.cpp"), "int main() {}\n");
+        String compiler = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger builds = new AtomicInteger();
+        // a killed compiler, not remembered, so every caller builds again
+        CompileCache.Compiler killed = (src, exe) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            builds.incrementAndGet();
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return new CompileCache.Result(false, "Killed signal terminated program cc1plus", -1);
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CompileCache.Result>> results = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                results.add(pool.submit(() -> cache.compile("cpp", compiler, List.of("-O2"), source,
+                        dir.resolve("exe-" + Thread.currentThread().getId()), killed)));
+                if (i % 8 == 0) Thread.sleep(5);
+            }
+            for (Future<CompileCache.Result> f : results) assertFalse(f.get().ok);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(40, builds.get());
+        assertEquals(1, maxRunning.get());
+        assertEquals(0, cache.getHits());
+        assertEquals(40, cache.getMisses());
+    }
+}
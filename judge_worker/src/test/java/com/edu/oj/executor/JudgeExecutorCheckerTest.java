@@ -0,0 +1,195 @@
+package com.edu.oj.executor;
+
+import com.edu.oj.config.JudgeProperties;
+import com.edu.oj.manager.FileSystemManager;
+import com.edu.oj.manager.ProblemDataCache;
+import com.edu.oj.message.ResultMessage;
+import com.edu.oj.message.SubmissionMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Judges submissions of a special judge problem with the real launcher, so the checker
+ * runs as the checker user and the program as the runner user. Needs root and gcc/g++,
+ * skipped otherwise. The uids do not need passwd entries, the launcher takes numbers.
+ */
+class JudgeExecutorCheckerTest {
+
+    private static final long PROBLEM_ID = 1L;
+
+    // reads the output and the answer by path, like testlib checkers do
+    private static final String CHECKER = """
+            #include <cstdio>
+            int main(int argc, char **argv) {
+                FILE *out = fopen(argv[2], "r"), *ans = fopen(argv[3], "r");
+                if (!out || !ans) { fprintf(stderr, "cannot open files"); return 3; }
+                long long a, b;
+                if (fscanf(out, "%lld", &a) != 1) return 1;
+                if (fscanf(ans, "%lld", &b) != 1) return 3;
+                return a == b ? 0 : 1;
+            }
+            """;
+
+    private static Path base;
+    private static JudgeExecutor executor;
+    private static final Map<Long, String> codes = new HashMap<>();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        assumeTrue("root".equals(System.getProperty("user.name")), "needs root to drop privileges");
+        assumeTrue(available("gcc") && available("g++"), "needs gcc and g++");
+
+        // the cache has to be reachable by the checker user
+        base = Files.createTempDirectory("oj-checker-test");
+        Files.setPosixFilePermissions(base, PosixFilePermissions.fromString("rwxr-xr-x"));
+        Path launcher = base.resolve("oj-launcher");
+        Process gcc = new ProcessBuilder("gcc", "-O2", "-o", launcher.toString(), "launcher/oj_launcher.c")
+                .inheritIO().start();
+        assertTrue(gcc.waitFor(60, TimeUnit.SECONDS) && gcc.exitValue() == 0, "launcher does not compile");
+
+        Path zip = base.resolve("problem.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip))) {
+            put(zos, "config.yml", "time_limit: 2000\nmemory_limit: 256\nchecker: checker.cpp\n");
+            put(zos, "checker.cpp", CHECKER);
+            put(zos, "testcases/1.in", "3 4\n");
+            put(zos, "testcases/1.out", "7\n");
+        }
+
+        JudgeProperties props = new JudgeProperties();
+        props.setCacheDir(base.resolve("cache").toString());
+        props.setLauncher(launcher.toString());
+        props.setCaseThreads(2);
+
+        FileSystemManager fsm = new FileSystemManager() {
+            @Override
+            public String getProblemETag(Long problemId) {
+                return "v1";
+            }
+
+            @Override
+            public com.edu.oj.entity.ProblemMetadata getProblemManifest(Long problemId) {
+                return null;
+            }
+
+            @Override
+            public String downloadProblemZip(Long problemId, Path target) throws IOException {
+                Files.copy(zip, target, StandardCopyOption.REPLACE_EXISTING);
+                return "v1";
+            }
+
+            @Override
+            public InputStream getSubmissionFileStream(Long submissionId, String relativePath) {
+                return new ByteArrayInputStream(codes.get(submissionId).getBytes(StandardCharsets.UTF_8));
+            }
+        };
+        ReflectionTestUtils.setField(fsm, "yamlMapper", new ObjectMapper(new YAMLFactory()));
+
+        executor = new JudgeExecutor(fsm, new ProblemDataCache(fsm, props), new CpuPool(2, null),
+                new SandboxRunner(props, new ProcessMonitor(props)), new CompileCache(props), props);
+    }
+
+    @AfterAll
+    static void tearDown() throws IOException {
+        if (base == null) return;
+        try (var s = Files.walk(base)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    void checkerReadsTestcasesAndOutput() {
+        assertEquals(JudgeExecutor.ST_ACCEPTED, judge(1L, """
+                #include <cstdio>
+                int main() { long long a, b; scanf("%lld %lld", &a, &b); printf("%lld\\n", a + b); }
+                """));
+    }
+
+    @Test
+    void programCannotReadExpectedOutputs() {
+        // prints the first answer it can find in the cache, "0" when everything is denied
+        String code = """
+                #include <cstdio>
+                #include <dirent.h>
+                #include <string>
+                int main() {
+                    std::string root = "%s";
+                    DIR *d = opendir(root.c_str());
+                    struct dirent *e;
+                    while (d && (e = readdir(d))) {
+                        FILE *f = fopen((root + "/" + e->d_name + "/testcases/1.out").c_str(), "r");
+                        long long v;
+                        if (f && fscanf(f, "%%lld", &v) == 1) { printf("%%lld\\n", v); return 0; }
+                    }
+                    printf("0\\n");
+                }
+                """.formatted(base.resolve("cache").resolve("problems"));
+        assertEquals(JudgeExecutor.ST_WRONG_ANSWER, judge(2L, code));
+    }
+
+    @Test
+    void programCannotReplaceChecker() {
+        // swaps the checker for /bin/true, which would accept the wrong answer below
+        String code = """
+                #include <cstdio>
+                #include <string>
+                #include <unistd.h>
+                int main() {
+                    char exe[4096] = {0};
+                    readlink("/proc/self/exe", exe, sizeof(exe) - 1);
+                    std::string dir(exe);
+                    dir = dir.substr(0, dir.rfind('/'));
+                    unlink((dir + "/checker").c_str());
+                    symlink("/bin/true", (dir + "/checker").c_str());
+                    rename((dir + "/checker").c_str(), (dir + "/checker.old").c_str());
+                    printf("8\\n");
+                }
+                """;
+        assertEquals(JudgeExecutor.ST_WRONG_ANSWER, judge(3L, code));
+    }
+
+    private static long judge(long submissionId, String code) {
+        codes.put(submissionId, code);
+        List<ResultMessage> out = new ArrayList<>();
+        executor.judge(new SubmissionMessage(submissionId, PROBLEM_ID, "cpp", null), out::add);
+        ResultMessage last = out.get(out.size() - 1);
+        assertTrue(last.getIsOver());
+        return last.getStatus();
+    }
+
+    private static void put(ZipOutputStream zos, String name, String content) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(content.getBytes(StandardCharsets.UTF_8));
+        zos.closeEntry();
+    }
+
+    private static boolean available(String cmd) {
+        try {
+            Process p = new ProcessBuilder(cmd, "--version").redirectErrorStream(true).start();
+            try (OutputStream ignored = p.getOutputStream(); InputStream is = p.getInputStream()) {
+                is.readAllBytes();
+            }
+            return p.waitFor(30, TimeUnit.SECONDS) && p.exitValue() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.edu.oj.executor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FLOAT mode with tokens longer than it buffers.
+ */
+class OutputComparatorTest {
+
+    @TempDir
+    Path dir;
+
+    private final OutputComparator floats = new OutputComparator(OutputComparator.Mode.FLOAT, 1e-6, 1e-6);
+
+    @Test
+    void numbersWithinEpsilon() throws IOException {
+        assertTrue(same("1.0 2.5\nabc\n", "1.0000001  2.5 abc"));
+        assertFalse(same("1.0 2.5\n", "1.1 2.5\n"));
+    }
+
+    @Test
+    void hugeTokensAreComparedAsBytes() throws IOException {
+        String big = "7".repeat(OutputComparator.MAX_TOKEN * 3 + 5);
+        assertTrue(same(big + " 1.0\n", big + " 1.0000001\n"));
+        // differs after the buffered prefix
+        assertFalse(same(big + "1 1.0\n", big + "2 1.0\n"));
+        // one side longer, the other side ends right at the buffer
+        assertFalse(same(big + " 1.0\n", big + "7 1.0\n"));
+        assertFalse(same("7".repeat(OutputComparator.MAX_TOKEN), "7".repeat(OutputComparator.MAX_TOKEN + 1)));
+        assertFalse(same("1.0 " + big, "1.0 3"));
+    }
+
+    private boolean same(String expected, String actual) throws IOException {
+        Path e = Files.writeString(dir.resolve("expected"), expected);
+        Path a = Files.writeString(dir.resolve("actual"), actual);
+        return floats.same(e, a);
+    }
+}
@@ -0,0 +1,88 @@
+package com.edu.oj.executor;
+
+import com.edu.oj.message.ResultMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A failed result send is retried for its submission instead of leaving it undelivered.
+ */
+class ResultPublisherTest {
+
+    @Test
+    void failedSubmissionIsResentInOrder() {
+        FlakyProducer producer = new FlakyProducer(2);
+        ResultPublisher publisher = new ResultPublisher(producer, "result", new ObjectMapper(), 10, 3, 1);
+        for (long tc = 0; tc < 3; tc++) publisher.publish(1L, result(1L, tc));
+
+        assertTrue(publisher.finish(1L));
+        // the one send that got through, then all three results again in order
+        assertEquals(List.of(2L, 0L, 1L, 2L), cases(producer));
+    }
+
+    @Test
+    void reportsFailureOnceRetriesAreUsedUp() {
+        FlakyProducer producer = new FlakyProducer(100);
+        ResultPublisher publisher = new ResultPublisher(producer, "result", new ObjectMapper(), 10, 2, 1);
+        publisher.publish(1L, result(1L, 0));
+        publisher.publish(2L, result(2L, 0));
+
+        assertFalse(publisher.finish(1L));
+        assertFalse(publisher.finish(2L));
+
+        // later submissions start clean
+        producer.failures = 0;
+        publisher.publish(1L, result(1L, 5));
+        assertTrue(publisher.finish(1L));
+    }
+
+    private static ResultMessage result(long submissionId, long testCaseId) {
+        ResultMessage rm = new ResultMessage();
+        rm.setSubmissionId(submissionId);
+        rm.setTestCaseId(testCaseId);
+        return rm;
+    }
+
+    private static List<Long> cases(MockProducer<String, String> producer) {
+        ObjectMapper om = new ObjectMapper();
+        return producer.history().stream().map(r -> {
+            try {
+                return om.readValue(r.value(), ResultMessage.class).getTestCaseId();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).collect(Collectors.toList());
+    }
+
+    // Fails the first sends like an expired delivery timeout, acknowledges the rest
+    private static class FlakyProducer extends MockProducer<String, String> {
+        int failures;
+
+        FlakyProducer(int failures) {
+            super(true, new StringSerializer(), new StringSerializer());
+            this.failures = failures;
+        }
+
+        @Override
+        public synchronized Future<RecordMetadata> send(ProducerRecord<String, String> record, Callback callback) {
+            if (failures == 0) return super.send(record, callback);
+            failures--;
+            TimeoutException ex = new TimeoutException("Expiring record");
+            if (callback != null) callback.onCompletion(null, ex);
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.edu.oj.executor;
+
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Per-run spawn overhead of the sandbox: su + bash (old path) vs the native launcher,
+ * with a plain fork+exec as lower bound. Runs a no-op program many times. Lives in the test
+ * sources and is not part of the worker jar; run it as root from judge_worker/ on a host
+ * with a code_runner user and the launcher built from launcher/oj_launcher.c:
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *      com.edu.oj.executor.SpawnBenchmark [runs] [launcher]
+ * </pre>
+ * Numbers depend on the host (PAM configuration, kernel, CPU); compare the rows of one
+ * run with each other rather than with numbers from another machine.
+ */
+public class SpawnBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        Path launcher = Paths.get(args.length > 1 ? args[1] : "/usr/local/bin/oj-launcher");
+        Path exe = Paths.get("/bin/true");
+        long stackKb = 256 * 1024;
+
+        System.out.println("runs=" + runs + " exe=" + exe);
+        bench("direct", runs, () -> List.of(exe.toString()));
+        bench("su+bash", runs, () -> SandboxRunner.suCommand(SandboxRunner.RUNNER_USER, stackKb, -1, exe, List.of()));
+        bench("su+bash+taskset", runs, () -> SandboxRunner.suCommand(SandboxRunner.RUNNER_USER, stackKb, 0, exe, List.of()));
+        if (Files.isExecutable(launcher)) {
+            bench("launcher", runs, () -> SandboxRunner.launcherCommand(launcher, 10001, 10001, stackKb, -1, null, exe, List.of()));
+            bench("launcher+cpu", runs, () -> SandboxRunner.launcherCommand(launcher, 10001, 10001, stackKb, 0, null, exe, List.of()));
+        } else {
+            System.out.println("launcher " + launcher + " not found, skipped");
+        }
+    }
+
+    private static void bench(String name, int runs, Supplier<List<String>> cmd) throws Exception {
+        // warm up page cache, PAM modules and the JVM's spawn path
+        for (int i = 0; i < Math.min(20, runs); i++) spawn(cmd.get());
+
+        long[] us = new long[runs];
+        int failed = 0;
+        for (int i = 0; i < runs; i++) {
+            long t0 = System.nanoTime();
+            if (spawn(cmd.get()) != 0) failed++;
+            us[i] = (System.nanoTime() - t0) / 1000;
+        }
+        Arrays.sort(us);
+        long sum = 0;
+        for (long x : us) sum += x;
+        System.out.printf("%-16s mean=%6dus p50=%6dus p99=%6dus max=%6dus failed=%d%n",
+                name, sum / runs, us[runs / 2], us[(int) (runs * 0.99)], us[runs - 1], failed);
+    }
+
+    private static int spawn(List<String> cmd) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        pb.environment().clear();
+        pb.environment().put("PATH", "/usr/local/sbin:/usr/local/bin:/usr/sbin:/usr/bin:/sbin:/bin");
+        pb.redirectInput(ProcessBuilder.Redirect.from(Paths.get("/dev/null").toFile()));
+        pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        return pb.start().waitFor();
+    }
+}
@@ -0,0 +1,192 @@
+package com.edu.oj.manager;
+
+import com.edu.oj.config.JudgeProperties;
+import com.edu.oj.entity.ProblemFile;
+import com.edu.oj.entity.ProblemMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Lifetime of the content-addressed testdata store across loads, invalidations and
+ * restarts. Needs root, trees are handed to the checker group.
+ */
+class ProblemDataCacheTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private final Map<Long, ProblemMetadata> manifests = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> contents = new ConcurrentHashMap<>();
+    private final List<String> downloads = Collections.synchronizedList(new ArrayList<>());
+    private FileSystemManager fsm;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue("root".equals(System.getProperty("user.name")), "needs root to change the group of the trees");
+        fsm = new FileSystemManager() {
+            @Override
+            public String getProblemETag(Long problemId) {
+                return manifests.get(problemId).getVersion();
+            }
+
+            @Override
+            public ProblemMetadata getProblemManifest(Long problemId) {
+                return manifests.get(problemId);
+            }
+
+            @Override
+            public long downloadTestdata(String sha256, Path target) throws IOException {
+                downloads.add(sha256);
+                Files.write(target, contents.get(sha256));
+                return contents.get(sha256).length;
+            }
+        };
+    }
+
+    @Test
+    void storeSurvivesRestartAndTreeDeletion() throws IOException {
+        publish(1L, "v1", "1 2\n", "3\n");
+        publish(2L, "v1", "5 6\n", "11\n");
+        ProblemDataCache cache = cache(1L << 30);
+        cache.acquire(1L).close();
+        cache.acquire(2L).close();
+        cache.shutdown();
+
+        // restart, then a new version of problem 1 that keeps its input
+        downloads.clear();
+        cache = cache(1L << 30);
+        publish(1L, "v2", "1 2\n", "4\n");
+        try (ProblemDataCache.Lease lease = cache.acquire(1L)) {
+            assertEquals("4\n", Files.readString(lease.getRoot().resolve("testcases/1.out")));
+        }
+        assertEquals(List.of(sha("4\n")), downloads);
+
+        cache.invalidate(1L);
+        assertFalse(stored("1 2\n"));
+        assertFalse(stored("4\n"));
+        // left by the previous run and not used by any tree yet
+        assertTrue(stored("3\n"));
+        assertTrue(stored("5 6\n"));
+        assertTrue(stored("11\n"));
+
+        downloads.clear();
+        try (ProblemDataCache.Lease lease = cache.acquire(2L)) {
+            assertEquals("11\n", Files.readString(lease.getRoot().resolve("testcases/1.out")));
+        }
+        assertEquals(List.of(), downloads);
+        cache.shutdown();
+    }
+
+    @Test
+    void sharedContentIsKeptUntilLastTreeIsDeleted() throws IOException {
+        publish(1L, "v1", "1 2\n", "3\n");
+        publish(2L, "v1", "1 2\n", "-1\n");
+        ProblemDataCache cache = cache(1L << 30);
+        cache.acquire(1L).close();
+        ProblemDataCache.Lease lease = cache.acquire(2L);
+
+        cache.invalidate(1L);
+        assertTrue(stored("1 2\n"));
+        assertFalse(stored("3\n"));
+
+        // still leased, deleted when the lease is closed
+        cache.invalidate(2L);
+        assertTrue(stored("1 2\n"));
+        lease.close();
+        assertFalse(stored("1 2\n"));
+        assertFalse(stored("-1\n"));
+        cache.shutdown();
+    }
+
+    @Test
+    void startupKeepsMostRecentContentWithinBudget() throws IOException {
+        Path blobs = Files.createDirectories(cacheDir.resolve("testdata"));
+        String[] data = {"old old old\n", "newer newer\n", "newest newe\n"};
+        for (int i = 0; i < data.length; i++) {
+            Path p = Files.writeString(blobs.resolve(sha(data[i])), data[i]);
+            Files.setLastModifiedTime(p, FileTime.fromMillis(1_000_000L * (i + 1)));
+        }
+        Files.writeString(blobs.resolve(sha("x") + "_1.part"), "x");
+
+        cache(24).shutdown();
+        assertFalse(stored(data[0]));
+        assertTrue(stored(data[1]));
+        assertTrue(stored(data[2]));
+        try (var s = Files.list(blobs)) {
+            assertEquals(2, s.count());
+        }
+    }
+
+    @Test
+    void keptContentCountsAgainstBudgetAndIsEvictedFirst() throws IOException {
+        Path blobs = Files.createDirectories(cacheDir.resolve("testdata"));
+        String[] data = {"old old old\n", "newer newer\n", "1 2\n"};
+        for (int i = 0; i < data.length; i++) {
+            Path p = Files.writeString(blobs.resolve(sha(data[i])), data[i]);
+            Files.setLastModifiedTime(p, FileTime.fromMillis(1_000_000L * (i + 1)));
+        }
+        // all 28 bytes fit at startup, the tree then adds 2
+        ProblemDataCache cache = cache(28);
+
+        // reuses "1 2\n" and downloads "3\n"; the oldest unused file makes room
+        publish(1L, "v1", "1 2\n", "3\n");
+        cache.acquire(1L).close();
+        assertEquals(List.of(sha("3\n")), downloads);
+        assertFalse(stored(data[0]));
+        assertTrue(stored(data[1]));
+        assertTrue(stored("1 2\n"));
+        assertTrue(stored("3\n"));
+
+        // a bigger tree evicts the rest of the unused files before the cached tree
+        publish(2L, "v1", "x".repeat(10) + "\n", "y".repeat(9) + "\n");
+        cache.acquire(2L).close();
+        assertFalse(stored(data[1]));
+        try (ProblemDataCache.Lease lease = cache.acquire(1L)) {
+            assertTrue(Files.exists(lease.getRoot().resolve("testcases/1.out")));
+        }
+        assertEquals(3, downloads.size());
+        cache.shutdown();
+    }
+
+    private ProblemDataCache cache(long maxBytes) throws IOException {
+        JudgeProperties props = new JudgeProperties();
+        props.setCacheDir(cacheDir.toString());
+        props.setProblemCacheMaxBytes(maxBytes);
+        return new ProblemDataCache(fsm, props);
+    }
+
+    private void publish(Long problemId, String version, String in, String out) {
+        List<ProblemFile> files = new ArrayList<>();
+        for (String[] f : new String[][]{{"testcases/1.in", in}, {"testcases/1.out", out}}) {
+            contents.put(sha(f[1]), f[1].getBytes(StandardCharsets.UTF_8));
+            files.add(new ProblemFile(f[0], (long) f[1].length(), sha(f[1])));
+        }
+        manifests.put(problemId, new ProblemMetadata(problemId, version, null, List.of(), files));
+    }
+
+    private boolean stored(String content) {
+        return Files.exists(cacheDir.resolve("testdata").resolve(sha(content)));
+    }
+
+    private static String sha(String content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -7,9 +7,22 @@ CREATE TABLE IF NOT EXISTS submissions (
     user_id BIGINT NOT NULL,
     language VARCHAR(30) NOT NULL,
     submission_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    -- 最近一次投递评测的时间：提交与重测时写入，评测超时以它为准
+    queued_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    -- 评测序号：每次重测加一，结果缓存以它区分新旧结果
+    judge_seq INT NOT NULL DEFAULT 0,
     status VARCHAR(20) NOT NULL,
     score SMALLINT DEFAULT 0,
+    -- 评测结束时写入：结果代码（同 result.json 的 status）、最大用时（ms）与内存（KB）
+    verdict SMALLINT NULL,
+    time_used INT NULL,
+    memory_used INT NULL,
 
+    INDEX idx_user_id (user_id, id),
+    INDEX idx_problem_id (problem_id, id),
+    INDEX idx_verdict (verdict, id),
+    INDEX idx_problem_verdict (problem_id, verdict, time_used),
+    INDEX idx_user_verdict (user_id, verdict, problem_id),
     FOREIGN KEY (problem_id) REFERENCES problems(id),
     FOREIGN KEY (user_id) REFERENCES users(id)
 )
\ No newline at end of file
@@ -0,0 +1,12 @@
+CREATE DATABASE IF NOT EXISTS oj_db;
+USE oj_db;
+
+-- 评测中提交的进度（oj.progress-store.type=database 时使用），评测结束后删除
+CREATE TABLE IF NOT EXISTS submission_progress (
+    submission_id BIGINT PRIMARY KEY,
+    config MEDIUMTEXT NOT NULL,
+    updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+
+    INDEX idx_updated_at (updated_at),
+    FOREIGN KEY (submission_id) REFERENCES submissions(id) ON DELETE CASCADE
+)
@@ -0,0 +1,9 @@
+CREATE DATABASE IF NOT EXISTS oj_db;
+USE oj_db;
+
+-- 维护的计数（提交总数、各题/各用户提交数、题目数、用户数），由后端定期批量累加并校准
+CREATE TABLE IF NOT EXISTS counters (
+    name VARCHAR(64) PRIMARY KEY,
+    value BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)
+)